@@ -26,4 +26,20 @@ public @interface DatabaseEntity {
   boolean generateCrudStubs() default false;
 
   Class<?>[] persistableEntities();
+
+  /**
+   * opens the database in write ahead logging mode
+   */
+  boolean writeAheadLogging() default false;
+
+  /**
+   * number of wal pages after which a commit checkpoints the log,
+   * zero disables automatic checkpoints and a negative value keeps the sqlite default
+   */
+  int walAutoCheckpoint() default -1;
+
+  /**
+   * the pragmas applied each time the database is opened, see PragmaProfile
+   */
+  PragmaPreset pragmaProfile() default PragmaPreset.NONE;
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database
+
+/**
+ * named sets of sqlite pragmas applied when the database is opened
+ */
+enum class PragmaPreset {
+  /**
+   * keeps the sqlite defaults
+   */
+  NONE,
+  /**
+   * memory mapped reads, a larger page cache and fewer syncs, a commit may be lost on power failure but not corrupted
+   */
+  THROUGHPUT,
+  /**
+   * syncs on every commit and waits longer for locks
+   */
+  DURABILITY,
+  /**
+   * a small page cache, temporary tables on disk and a bounded journal
+   */
+  LOW_MEMORY
+}
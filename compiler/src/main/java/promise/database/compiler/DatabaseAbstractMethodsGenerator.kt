@@ -13,8 +13,10 @@
 
 package promise.database.compiler
 
+import com.squareup.javapoet.ArrayTypeName
 import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.CodeBlock
+import com.squareup.javapoet.FieldSpec
 import com.squareup.javapoet.MethodSpec
 import com.squareup.javapoet.ParameterizedTypeName
 import com.squareup.javapoet.TypeVariableName
@@ -22,7 +24,11 @@ import com.squareup.javapoet.WildcardTypeName
 import org.jetbrains.annotations.NotNull
 import promise.database.DAO
 import promise.database.compiler.utils.JavaUtils
+import promise.database.compiler.utils.asTableClassName
 import promise.database.compiler.utils.asTypeElement
+import promise.database.compiler.utils.camelCase
+import promise.database.compiler.utils.checkIfAnyElementNeedsTypeConverter
+import promise.database.compiler.utils.getTableClassNameString
 import promise.database.compiler.utils.getTableEntities
 import javax.annotation.processing.ProcessingEnvironment
 import javax.lang.model.element.Element
@@ -36,6 +42,11 @@ class DatabaseAbstractMethodsGenerator(
     private val element: TypeElement,
     private val processingEnv: ProcessingEnvironment) : CodeGenerator<List<MethodSpec>?> {
 
+  /**
+   * fields the generated methods read, filled by [generate]
+   */
+  val fieldSpecs = ArrayList<FieldSpec>()
+
   override fun generate(): List<MethodSpec>? {
     val enclosedElements: List<Element?> = element.enclosedElements
     val methods: MutableList<ExecutableElement> = ArrayList(ElementFilter.methodsIn(enclosedElements))
@@ -61,13 +72,45 @@ class DatabaseAbstractMethodsGenerator(
       }
     }
 
+    val entities = element.getTableEntities(processingEnv)
+    val entityCases = CodeBlock.builder()
+    val entityTables = CodeBlock.builder()
+    val lookupsBuilder = CodeBlock.builder()
+    entities.forEachIndexed { index, entity ->
+      val separator = if (index == 0) "" else ", "
+      entityCases.addStatement("case \$S: return (FastTable<T>) tables[\$L]", ClassName.get(entity).reflectionName(), index)
+      if (entity.checkIfAnyElementNeedsTypeConverter()) {
+        val tableVarName = entity.getTableClassNameString().camelCase()
+        lookupsBuilder.addStatement("\$T \$L = database.obtain(\$T.class)",
+            entity.asTableClassName(processingEnv), tableVarName, entity.asTableClassName(processingEnv))
+        lookupsBuilder.addStatement("\$L.setTypeConverter(typeConverter)", tableVarName)
+        entityTables.add("\$L\$L", separator, tableVarName)
+      } else entityTables.add("\$Ldatabase.obtain(\$T.class)", separator, entity.asTableClassName(processingEnv))
+    }
+    funSpecs.add(MethodSpec.methodBuilder("entityTables")
+        .addModifiers(Modifier.PRIVATE)
+        .returns(ArrayTypeName.of(ParameterizedTypeName.get(ClassName.get("promise.db", "FastTable"), WildcardTypeName.subtypeOf(Object::class.java))))
+        .addJavadoc("tables of the entities, indexed by the cases of getEntityClassVisitor\n")
+        .beginControlFlow("if (entityTables == null)")
+        .addStatement("\$T database = getDatabaseInstance()", ClassName.get("promise.db", "FastDatabase"))
+        .addCode(lookupsBuilder.build())
+        .addStatement("entityTables = new FastTable<?>[]{\$L}", entityTables.build())
+        .endControlFlow()
+        .addStatement("return entityTables")
+        .build())
+    fieldSpecs.add(FieldSpec.builder(ArrayTypeName.of(ParameterizedTypeName.get(ClassName.get("promise.db", "FastTable"), WildcardTypeName.subtypeOf(Object::class.java))), "entityTables")
+        .addModifiers(Modifier.PRIVATE, Modifier.VOLATILE)
+        .build())
+
     val codeBlock = CodeBlock.builder()
         .beginControlFlow("return new Visitor<Class<? extends T>, FastTable<T>>()")
         .add("@Override \n")
         .beginControlFlow("public FastTable<T> visit(Class<? extends T> entityClass)")
-    element.getTableEntities(processingEnv).forEach {
-      JavaUtils.generateIfStatementObtainClassString(processingEnv, codeBlock, it)
-    }
+        .addStatement("FastTable<?>[] tables = entityTables()")
+        // the name of each entity is a compile time key, the switch goes straight to the slot of its table
+        .beginControlFlow("switch (entityClass.getName())")
+        .add(entityCases.build())
+        .endControlFlow()
     codeBlock.addStatement("throw new IllegalArgumentException(entityClass.getCanonicalName() + \"not registered with this database\")")
         .endControlFlow()
         .add("};")
@@ -16,6 +16,8 @@ package promise.database.compiler
 import com.squareup.javapoet.AnnotationSpec
 import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.CodeBlock
+import promise.database.DatabaseEntity
+import promise.database.PragmaPreset
 import promise.database.compiler.utils.LogUtil
 import promise.database.compiler.utils.getDatabaseVersion
 import promise.database.compiler.utils.getTableClassNameString
@@ -40,6 +42,7 @@ class DatabaseAnnotationGenerator(
       }
       val generatedVersion = TableMetaDataWriter.finalMaxDbVersion()
       val version = max(element.getDatabaseVersion(), generatedVersion)
+      val databaseEntity = element.getAnnotation(DatabaseEntity::class.java)
       try {
         entities?.forEachIndexed { index, entityClass ->
           val className = entityClass.getTableClassNameString()
@@ -55,6 +58,9 @@ class DatabaseAnnotationGenerator(
       return AnnotationSpec.builder(ClassName.get("promise.db", "Database"))
           .addMember("tables", CodeBlock.of(stmt))
           .addMember("version", "$version")
+          .addMember("writeAheadLogging", "${databaseEntity.writeAheadLogging}")
+          .addMember("walAutoCheckpoint", "${databaseEntity.walAutoCheckpoint}")
+          .addMember("pragmaProfile", "\$T.\$L", ClassName.get(PragmaPreset::class.java), databaseEntity.pragmaProfile.name)
           .build()
     }
     throw IllegalStateException("Element must be a type element")
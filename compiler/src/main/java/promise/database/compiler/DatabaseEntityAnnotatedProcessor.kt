@@ -87,6 +87,7 @@ class DatabaseEntityAnnotatedProcessor(private val processingEnv: ProcessingEnvi
     abstractFuncsBuilder.generate()?.forEach {
       classBuilder.addMethod(it)
     }
+    classBuilder.addFields(abstractFuncsBuilder.fieldSpecs)
 
     DatabaseCrudStubMethodsGenerator(classBuilder, element, processingEnv).generate()
 
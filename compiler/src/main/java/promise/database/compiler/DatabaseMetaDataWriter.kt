@@ -17,6 +17,8 @@ import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory
 import promise.database.compiler.migration.DatabaseMetaData
+import promise.database.compiler.migration.SchemaDiff
+import promise.database.compiler.migration.VersionChange
 import promise.database.compiler.utils.LogUtil
 import promise.database.compiler.utils.getDatabaseVersion
 import java.io.File
@@ -39,24 +41,32 @@ class DatabaseMetaDataWriter
 
   var currentDatabaseMetaData: DatabaseMetaData? = null
 
+  /**
+   * snapshots of the earlier versions, oldest first
+   */
+  private val snapshots: ArrayList<DatabaseMetaData> = ArrayList()
+
+  /**
+   * statements that upgrade each snapshot to the next one, filled by [process]
+   */
+  var schemaMigrations: List<Pair<VersionChange, List<String>>> = emptyList()
+
   @Suppress("RECEIVER_NULLABILITY_MISMATCH_BASED_ON_JAVA_ANNOTATIONS")
   fun loadCurrentMetaData() = try {
     val file = File(schemasPath)
     if (file.exists() && file.isDirectory) {
-      var files = file.listFiles { pathname -> pathname.isFile && pathname.name.endsWith(".yml") }
-          .toList()
+      val files = file.listFiles { pathname -> pathname.isFile && pathname.name.endsWith(".yml") }
+          .sortedBy { it.nameWithoutExtension.toIntOrNull() ?: 0 }
       if (files.isNotEmpty()) {
-        val currentFile: File
-        if (files.size == 1) currentFile = files[0] else {
-          files = files.sortedWith(Comparator<File> { o1, o2 -> o1.name.compareTo(o2.name) })
-          currentFile = files.last()
-        }
         //LogUtil.n("Current file: ${currentFile.name}")
         val om = ObjectMapper(YAMLFactory())
         //xmlMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        val fileWriter = FileReader(currentFile)
-        currentDatabaseMetaData = om.readValue(fileWriter, DatabaseMetaData::class.java)
-        fileWriter.close()
+        files.forEach {
+          val fileReader = FileReader(it)
+          snapshots.add(om.readValue(fileReader, DatabaseMetaData::class.java))
+          fileReader.close()
+        }
+        currentDatabaseMetaData = snapshots.last()
       } else currentDatabaseMetaData = DatabaseMetaData()
     } else currentDatabaseMetaData = DatabaseMetaData()
   } catch (e: JsonProcessingException) {
@@ -74,9 +84,26 @@ class DatabaseMetaDataWriter
       val generatedVersion = TableMetaDataWriter.finalMaxDbVersion()
       databaseMetaData.dbVersion = max(databaseElement.getDatabaseVersion(), generatedVersion)
     }
+    schemaMigrations = diffSnapshots(databaseMetaData)
     serializeToXML(databaseMetaData, databaseMetaData.dbVersion)
   }
 
+  /**
+   * diffs every snapshot with the next one, the snapshot of the version being built replaces an older file of the same version
+   */
+  private fun diffSnapshots(databaseMetaData: DatabaseMetaData): List<Pair<VersionChange, List<String>>> {
+    val versions = snapshots.filter { it.dbVersion < databaseMetaData.dbVersion } + databaseMetaData
+    val migrations = ArrayList<Pair<VersionChange, List<String>>>()
+    for (i in 1 until versions.size) {
+      val statements = SchemaDiff(versions[i - 1], versions[i]).statements() ?: continue
+      migrations.add(Pair(VersionChange().apply {
+        fromVersion = versions[i - 1].dbVersion
+        toVersion = versions[i].dbVersion
+      }, statements))
+    }
+    return migrations
+  }
+
   private fun serializeToXML(obj: Any, version: Int) {
     try {
       val file = File(schemasPath + File.separator + version + ".yml")
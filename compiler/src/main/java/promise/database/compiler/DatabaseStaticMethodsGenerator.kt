@@ -19,7 +19,11 @@ import com.squareup.javapoet.FieldSpec
 import com.squareup.javapoet.MethodSpec
 import com.squareup.javapoet.TypeSpec
 import promise.database.AddedEntity
+import promise.database.DatabaseEntity
+import promise.database.PragmaPreset
 import promise.database.compiler.utils.JavaUtils
+import promise.database.compiler.utils.asTableClassName
+import promise.database.compiler.utils.getDatabaseVersion
 import promise.database.compiler.utils.getTableClassNameString
 import promise.database.compiler.utils.getTableEntities
 import promise.database.compiler.utils.toTypeName
@@ -27,6 +31,7 @@ import javax.annotation.processing.ProcessingEnvironment
 import javax.lang.model.element.Element
 import javax.lang.model.element.Modifier
 import javax.lang.model.element.TypeElement
+import kotlin.math.max
 
 class DatabaseStaticMethodsGenerator(
     private val typeSpec: TypeSpec.Builder,
@@ -79,6 +84,40 @@ class DatabaseStaticMethodsGenerator(
         """.trimIndent())
           .build())
 
+    val databaseEntity = element.getAnnotation(DatabaseEntity::class.java)
+    val version = max(element.getDatabaseVersion(), TableMetaDataWriter.finalMaxDbVersion())
+    val tableDefinitions = CodeBlock.builder()
+    element.getTableEntities(processingEnv).forEachIndexed { index, entity ->
+      val tableClassName = entity.asTableClassName(processingEnv)
+      tableDefinitions.add(if (index == 0) "\n" else ",\n")
+      tableDefinitions.add("new \$T<>(\$T.class, \$T.METADATA, \$T::new)",
+          ClassName.get("promise.db", "TableDefinition"), tableClassName, tableClassName, tableClassName)
+    }
+    val schemaMigrations = CodeBlock.builder()
+    tableMetaDataWriter.schemaMigrations.forEachIndexed { i, migration ->
+      schemaMigrations.add(if (i == 0) "\n" else ",\n")
+      schemaMigrations.add("new \$T(\$L, \$L, new String[]{", ClassName.get("promise.db", "SchemaMigration"),
+          migration.first.fromVersion, migration.first.toVersion)
+      migration.second.forEachIndexed { j, statement -> schemaMigrations.add(if (j == 0) "\$S" else ",\n\$S", statement) }
+      schemaMigrations.add("})")
+    }
+    typeSpec.addField(FieldSpec.builder(ClassName.get("promise.db", "DatabaseDefinition"), "DEFINITION")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .initializer(CodeBlock.builder()
+            .add("new \$T(\$L, new \$T<?>[]{", ClassName.get("promise.db", "DatabaseDefinition"), version,
+                ClassName.get("promise.db", "TableDefinition"))
+            .add(tableDefinitions.build())
+            .add("}, \$L, \$L, new \$T[]{", databaseEntity.writeAheadLogging, databaseEntity.walAutoCheckpoint,
+                ClassName.get("promise.db", "SchemaMigration"))
+            .add(schemaMigrations.build())
+            .add("}, \$T.of(\$T.\$L))", ClassName.get("promise.db", "PragmaProfile"),
+                ClassName.get(PragmaPreset::class.java), databaseEntity.pragmaProfile.name)
+            .build())
+        .addJavadoc("""
+          Tables and settings of the database, created without reflection
+        """.trimIndent())
+        .build())
+
     typeSpec.addField(FieldSpec.builder(Boolean::class.javaPrimitiveType, "initialized")
         .initializer("false")
         .addJavadoc("""
@@ -99,7 +138,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createDatabase($classnameImpl.class, name, getMigration()));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, false, getMigration()));
         """.trimIndent()))
         .build())
 
@@ -119,7 +158,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createDatabase($classnameImpl.class, name, getMigration(), databaseCreationCallback));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, false, getMigration(), databaseCreationCallback));
         """.trimIndent()))
         .build())
 
@@ -132,7 +171,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createInMemoryDatabase($classnameImpl.class));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, null, false));
         """.trimIndent()))
         .build())
     // with in memory database
@@ -149,7 +188,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createInMemoryDatabase($classnameImpl.class, databaseCreationCallback));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, null, false, null, databaseCreationCallback));
         """.trimIndent()))
         .build())
 
@@ -162,7 +201,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createInMemoryReactiveDatabase($classnameImpl.class));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, null, true));
         """.trimIndent()))
         .build())
     // with callback
@@ -179,7 +218,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
           initialized = true;
-          return new $classnameImpl(FastDatabase.createInMemoryReactiveDatabase($classnameImpl.class, databaseCreationCallback));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, null, true, null, databaseCreationCallback));
         """.trimIndent()))
         .build())
 
@@ -194,7 +233,7 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
            initialized = true;
-          return new $classnameImpl(FastDatabase.createReactiveDatabase($classnameImpl.class, name, getMigration()));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, true, getMigration()));
         """.trimIndent()))
         .build())
 
@@ -214,7 +253,43 @@ class DatabaseStaticMethodsGenerator(
         .addCode(CodeBlock.of("""
           if (initialized) throw new IllegalStateException("Database already created");
            initialized = true;
-          return new $classnameImpl(FastDatabase.createReactiveDatabase($classnameImpl.class, name, getMigration(), databaseCreationCallback));
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, true, getMigration(), databaseCreationCallback));
+        """.trimIndent()))
+        .build())
+
+    // from a prepackaged database
+    typeSpec.addMethod(MethodSpec.methodBuilder("createDatabase")
+        .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+        .addParameter(ClassName.get(String::class.java), "name")
+        .addParameter(ClassName.get("promise.db", "PrepackagedDatabase"), "prepackagedDatabase")
+        .returns(ClassName.get(pack, classnameImpl))
+        .addJavadoc("""
+          Creates the database with name specified from a prebuilt database file
+          The file is copied the first time the database is opened and upgraded by the migrations
+          @Param name the name of the database
+          @Param prepackagedDatabase the prebuilt database
+        """.trimIndent())
+        .addCode(CodeBlock.of("""
+          if (initialized) throw new IllegalStateException("Database already created");
+          initialized = true;
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, false, getMigration(), null, prepackagedDatabase));
+        """.trimIndent()))
+        .build())
+
+    typeSpec.addMethod(MethodSpec.methodBuilder("createReactiveDatabase")
+        .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
+        .addParameter(ClassName.get(String::class.java), "name")
+        .addParameter(ClassName.get("promise.db", "PrepackagedDatabase"), "prepackagedDatabase")
+        .returns(ClassName.get(pack, classnameImpl))
+        .addJavadoc("""
+          Creates database, that enables calling rx DML functions in the tables, from a prebuilt database file
+          @Param name name of the database
+          @Param prepackagedDatabase the prebuilt database
+        """.trimIndent())
+        .addCode(CodeBlock.of("""
+          if (initialized) throw new IllegalStateException("Database already created");
+          initialized = true;
+          return new $classnameImpl(FastDatabase.createDatabase(DEFINITION, name, true, getMigration(), null, prepackagedDatabase));
         """.trimIndent()))
         .build())
 
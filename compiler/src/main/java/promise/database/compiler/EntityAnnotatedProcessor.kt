@@ -70,7 +70,8 @@ class EntityAnnotatedProcessor(private val processingEnv: ProcessingEnvironment,
 
     val fileName = element.getTableClassNameString()
 
-    val tableAnnotationSpec = TableAnnotationGenerator(element, processingEnv).generate()
+    val tableAnnotationGenerator = TableAnnotationGenerator(element, processingEnv)
+    val tableAnnotationSpec = tableAnnotationGenerator.generate()
 
     val classBuilder = TypeSpec.classBuilder(fileName)
         .addModifiers(Modifier.PUBLIC)
@@ -133,6 +134,10 @@ class EntityAnnotatedProcessor(private val processingEnv: ProcessingEnvironment,
 
     val columnSpecs = tableColumnPropsGenerator.generate()
 
+    val createStatements = tableAnnotationGenerator.getCreateStatements(tableColumnPropsGenerator.columnDefinitions)
+
+    classBuilder.addField(tableAnnotationGenerator.generateMetadataField(createStatements))
+
     columnSpecs.values.forEach {
       classBuilder.addField(it)
     }
@@ -145,8 +150,17 @@ class EntityAnnotatedProcessor(private val processingEnv: ProcessingEnvironment,
     val serializerGenerator = TableSerializerMethodGenerator(pack, className, tableColumnPropsGenerator.genColValues)
     classBuilder.addMethod(serializerGenerator.generate())
 
+    // statement binder generator
+    val binderGenerator = TableStatementBinderMethodGenerator(pack, className, tableColumnPropsGenerator.genColValues)
+    classBuilder.addSuperinterface(ParameterizedTypeName.get(
+        ClassName.get("promise.db", "StatementBinder"),
+        ClassName.get(pack, className)))
+    classBuilder.addMethod(binderGenerator.generateBoundColumnNames())
+    classBuilder.addMethod(binderGenerator.generate())
+
     // deserializer generator
     val deserializerGenerator = TableDeserializerMethodGenerator(pack, className, tableColumnPropsGenerator.genColValues)
+    classBuilder.addMethod(deserializerGenerator.generateSingleRow())
     classBuilder.addMethod(deserializerGenerator.generate())
 
     // migrations
@@ -154,7 +168,8 @@ class EntityAnnotatedProcessor(private val processingEnv: ProcessingEnvironment,
     columnSpecs.forEach {
       elemMap[it.key.first] = it.key.second
     }
-    val migrationGenerator = TableMigrationFieldGenerator(element, elemMap)
+    val columns = tableColumnPropsGenerator.columnDefinitions?.sortedBy { it.first }?.map { it.second }
+    val migrationGenerator = TableMigrationFieldGenerator(element, elemMap, columns ?: emptyList(), createStatements)
     val migrationFunc = migrationGenerator.generate()
     if (migrationFunc != null) classBuilder.addMethod(migrationFunc)
 
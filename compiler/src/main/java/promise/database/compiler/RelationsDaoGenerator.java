@@ -202,20 +202,31 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                 )
             )).addCode(CodeBlock.builder()
                 .addStatement("IdentifiableList<? extends $T> " + parentElementVarNames + " = " + getParentElementTableVarName + ".find().paginateDescending(skip, limit)", ClassName.get(element.asType()))
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    ClassName.get(element.asType()))
-                .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")",
-                    ClassName.get(element.asType()))
-                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasManyRelationFieldName) + "(new $T<>(get" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarName + ")))",
-                    ClassName.get("promise.model", "IdentifiableList"))
-                .endControlFlow()
-                .endControlFlow(")")
+                .addStatement("populateWith" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarNames + ")")
                 .addStatement("return " + parentElementVarNames)
                 .build())
             .build());
 
+        classBuilder.addMethod(MethodSpec.methodBuilder("paginateWith" + capitalizeFirst(hasManyRelationFieldName))
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(ClassName.get("promise.db", "PageToken"), "after")
+            .addParameter(int.class, "limit")
+            .returns(ParameterizedTypeName.get(ClassName.get("promise.db", "Page"),
+                WildcardTypeName.subtypeOf(
+                    ClassName.get(element.asType())
+                )
+            )).addCode(CodeBlock.builder()
+                .addStatement("$T page = " + getParentElementTableVarName + ".find().paginateDescendingAfter(after, limit)",
+                    ParameterizedTypeName.get(ClassName.get("promise.db", "Page"),
+                        WildcardTypeName.subtypeOf(
+                            ClassName.get(element.asType())
+                        )
+                    ))
+                .addStatement("populateWith" + capitalizeFirst(hasManyRelationFieldName) + "(page.getItems())")
+                .addStatement("return page")
+                .build())
+            .build());
+
         classBuilder.addMethod(MethodSpec.methodBuilder("listWith" + capitalizeFirst(hasManyRelationFieldName))
             .addModifiers(Modifier.PUBLIC)
             .returns(ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
@@ -224,16 +235,7 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                 )
             )).addCode(CodeBlock.builder()
                 .addStatement("IdentifiableList<? extends $T> " + parentElementVarNames + " = " + getParentElementTableVarName + ".findAll()", ClassName.get(element.asType()))
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    ClassName.get(element.asType()))
-                .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")",
-                    ClassName.get(element.asType()))
-                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasManyRelationFieldName) + "(new $T<>(get" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarName + ")))",
-                    ClassName.get("promise.model", "IdentifiableList"))
-                .endControlFlow()
-                .endControlFlow(")")
+                .addStatement("populateWith" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarNames + ")")
                 .addStatement("return " + parentElementVarNames)
                 .build())
             .build());
@@ -250,16 +252,52 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                 )
             )).addCode(CodeBlock.builder()
                 .addStatement("IdentifiableList<? extends $T> " + parentElementVarNames + " = " + getParentElementTableVarName + ".findAll(columns)", ClassName.get(element.asType()))
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    ClassName.get(element.asType()))
-                .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")",
+                .addStatement("populateWith" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarNames + ")")
+                .addStatement("return " + parentElementVarNames)
+                .build())
+            .build());
+
+        /*
+         * loads the children of all the parents with chunked IN queries instead of one query per parent
+         */
+        String relationElementCamelVarName = camelCase(relationElementVarName);
+        String relationHasOneGetter = relationElementCamelVarName + ".get" + capitalizeFirst(relationHasOneRelatedElement.getSimpleName().toString()) + "()";
+        ParameterizedTypeName relationListTypeName = ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
+            ClassName.get(relationElement.asType()));
+        classBuilder.addMethod(MethodSpec.methodBuilder("populateWith" + capitalizeFirst(hasManyRelationFieldName))
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
+                WildcardTypeName.subtypeOf(
+                    ClassName.get(element.asType())
+                )
+            ), parentElementVarNames)
+            .returns(ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
+                WildcardTypeName.subtypeOf(
+                    ClassName.get(element.asType())
+                )
+            ))
+            .addCode(CodeBlock.builder()
+                .addStatement("$T<Integer> " + parentElementVarName + "Ids = new $T<>(" + parentElementVarNames + ".size())",
+                    ClassName.get("promise.commons.model", "List"), ClassName.get("promise.commons.model", "List"))
+                .addStatement("for ($T " + parentElementVarName + " : " + parentElementVarNames + ") " + parentElementVarName + "Ids.add(" + parentElementVarName + ".getId())",
                     ClassName.get(element.asType()))
-                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasManyRelationFieldName) + "(new $T<>(get" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarName + ")))",
-                    ClassName.get("promise.model", "IdentifiableList"))
+                .addStatement("$T<$T> " + hasManyRelationFieldName + " = new $T<>()",
+                    ClassName.get("android.util", "SparseArray"), relationListTypeName, ClassName.get("android.util", "SparseArray"))
+                .beginControlFlow("for ($T " + relationElementCamelVarName + " : " + relationElementTableVarName + ".findAllIn($T." + relationHasOneRelatedElement.getSimpleName() + "Column, " + parentElementVarName + "Ids))",
+                    ClassName.get(relationElement.asType()), relationElementTableClassName)
+                .addStatement("if (" + relationHasOneGetter + " == null) continue")
+                .addStatement("$T group = " + hasManyRelationFieldName + ".get(" + relationHasOneGetter + ".getId())", relationListTypeName)
+                .beginControlFlow("if (group == null)")
+                .addStatement("group = new $T<>()", ClassName.get("promise.model", "IdentifiableList"))
+                .addStatement(hasManyRelationFieldName + ".put(" + relationHasOneGetter + ".getId(), group)")
+                .endControlFlow()
+                .addStatement("group.add(" + relationElementCamelVarName + ")")
+                .endControlFlow()
+                .beginControlFlow("for ($T " + parentElementVarName + " : " + parentElementVarNames + ")", ClassName.get(element.asType()))
+                .addStatement("$T group = " + hasManyRelationFieldName + ".get(" + parentElementVarName + ".getId())", relationListTypeName)
+                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasManyRelationFieldName) + "(group != null ? group : new $T<$T>())",
+                    ClassName.get("promise.model", "IdentifiableList"), ClassName.get(relationElement.asType()))
                 .endControlFlow()
-                .endControlFlow(")")
                 .addStatement("return " + parentElementVarNames)
                 .build())
             .build());
@@ -291,22 +329,27 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
             .addModifiers(Modifier.PUBLIC)
             .returns(long.class)
             .addCode(CodeBlock.builder()
-                .addStatement("long id = " + getParentElementTableVarName + ".save(" + parentElementVarName + ")")
-                .beginControlFlow(parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "().forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    TypeName.get(relationElement.asType()))
+                .beginControlFlow("return " + getParentElementTableVarName + ".getDatabase().runInTransaction(new $T<Long>()",
+                    ClassName.get("java.util.concurrent", "Callable"))
                 .add("@Override\n")
-                .beginControlFlow("public void accept($T " + camelCase(relationElementVarName) + ")", TypeName.get(relationElement.asType()))
+                .beginControlFlow("public Long call()")
+                .addStatement("long id = " + getParentElementTableVarName + ".save(" + parentElementVarName + ")")
+                .addStatement("if (id <= 0) throw new $T(\"could not save \" + " + parentElementVarName + ")", IllegalStateException.class)
                 .addStatement("$T " + parentElementVarName + "1 = new $T()",
                     TypeName.get(element.asType()),
                     TypeName.get(element.asType()))
                 .addStatement(parentElementVarName + "1.setId((int) id)")
+                .beginControlFlow("for ($T " + camelCase(relationElementVarName) + " : " + parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "())",
+                    TypeName.get(relationElement.asType()))
                 .addStatement(camelCase(relationElementVarName) + ".set" + capitalizeFirst(relationHasOneRelatedElement.getSimpleName().toString()) + "(" + parentElementVarName + "1)")
                 .endControlFlow()
-                .endControlFlow(")")
-                .addStatement(relationElementTableVarName + ".save(new $T<>(" + parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "()))",
+                .beginControlFlow("if (!" + relationElementTableVarName + ".save(new $T<>(" + parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "())))",
                     ClassName.get("promise.model", "IdentifiableList"))
+                .addStatement("throw new $T(\"could not save the " + hasManyRelationFieldName + " of \" + " + parentElementVarName + ")", IllegalStateException.class)
+                .endControlFlow()
                 .addStatement("return id")
+                .endControlFlow()
+                .endControlFlow(")")
                 .build())
             .build());
 
@@ -318,15 +361,36 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
             .addModifiers(Modifier.PUBLIC)
             .returns(boolean.class)
             .addCode(CodeBlock.builder()
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    TypeName.get(element.asType()))
+                .beginControlFlow("return " + getParentElementTableVarName + ".getDatabase().runInTransaction(new $T<Boolean>()",
+                    ClassName.get("java.util.concurrent", "Callable"))
                 .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")", TypeName.get(element.asType()))
-                .addStatement("saveWith" + capitalizeFirst(hasManyRelationFieldName) + "(" + parentElementVarName + ")")
+                .beginControlFlow("public Boolean call()")
+                .beginControlFlow("if (!" + getParentElementTableVarName + ".save(new $T<>(" + parentElementVarNames + ")))",
+                    ClassName.get("promise.model", "IdentifiableList"))
+                .addStatement("throw new $T(\"could not save \" + " + parentElementVarNames + ")", IllegalStateException.class)
+                .endControlFlow()
+                .addStatement("$T<$T> " + camelCase(relationElementVarNames) + " = new $T<>()",
+                    ClassName.get("promise.model", "IdentifiableList"),
+                    TypeName.get(relationElement.asType()),
+                    ClassName.get("promise.model", "IdentifiableList"))
+                .beginControlFlow("for ($T " + parentElementVarName + " : " + parentElementVarNames + ")", TypeName.get(element.asType()))
+                .addStatement("if (" + parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "() == null) continue")
+                .addStatement("$T " + parentElementVarName + "1 = new $T()",
+                    TypeName.get(element.asType()),
+                    TypeName.get(element.asType()))
+                .addStatement(parentElementVarName + "1.setId(" + parentElementVarName + ".getId())")
+                .beginControlFlow("for ($T " + camelCase(relationElementVarName) + " : " + parentElementVarName + ".get" + capitalizeFirst(hasManyRelationFieldName) + "())",
+                    TypeName.get(relationElement.asType()))
+                .addStatement(camelCase(relationElementVarName) + ".set" + capitalizeFirst(relationHasOneRelatedElement.getSimpleName().toString()) + "(" + parentElementVarName + "1)")
+                .addStatement(camelCase(relationElementVarNames) + ".add(" + camelCase(relationElementVarName) + ")")
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("if (!" + relationElementTableVarName + ".save(" + camelCase(relationElementVarNames) + "))")
+                .addStatement("throw new $T(\"could not save the " + hasManyRelationFieldName + " of \" + " + parentElementVarNames + ")", IllegalStateException.class)
                 .endControlFlow()
-                .endControlFlow(")")
                 .addStatement("return true")
+                .endControlFlow()
+                .endControlFlow(")")
                 .build())
             .build());
 
@@ -393,6 +457,23 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
             .addModifiers(Modifier.PRIVATE)
             .build());
 
+        /*
+         * relations to another table are read together with their parents in one LEFT JOIN
+         */
+        boolean joinable = !JavaUtils.isTypeEqual(relationElement.asType(), TypeName.get(element.asType()));
+        ClassName parentElementTableClassName = asTableClassName(element, processingEnvironment);
+        String joinQuery = getParentElementTableVarName + ".joinQuery($T." + hasOneRelationFieldName + "Column, " + relationElementTableVarName + ")";
+        TypeSpec joinBinder = TypeSpec.anonymousClassBuilder("")
+            .addSuperinterface(ParameterizedTypeName.get(ClassName.get("promise.db", "JoinBinder"),
+                ClassName.get(element.asType()), ClassName.get(relationElement.asType())))
+            .addMethod(MethodSpec.methodBuilder("bind")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ClassName.get(element.asType()), parentElementVarName)
+                .addParameter(ClassName.get(relationElement.asType()), camelCase(relationElementVarName))
+                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasOneRelationFieldName) + "(" + camelCase(relationElementVarName) + ")")
+                .build())
+            .build();
 
         classBuilder.addMethod(MethodSpec.methodBuilder("paginateWith" + pluralize(capitalizeFirst(hasOneRelationFieldName)))
             .addModifiers(Modifier.PUBLIC)
@@ -403,7 +484,13 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                     ClassName.get(element.asType())
                 )
             ))
-            .addCode(CodeBlock.builder()
+            .addCode(joinable ? CodeBlock.builder()
+                .addStatement("return " + getParentElementTableVarName + ".findAllJoined(" + joinQuery
+                        + ".orderByDescending($T.column(" + getParentElementTableVarName + ", $T.getId())).take(limit).skip(skip), "
+                        + relationElementTableVarName + ", $L)",
+                    parentElementTableClassName, ClassName.get("promise.db.projection", "Projection"),
+                    ClassName.get("promise.db", "FastTable"), joinBinder)
+                .build() : CodeBlock.builder()
                 .addStatement("$T " + parentElementVarNames + " = " + getParentElementTableVarName + ".find().paginateDescending(skip, limit)",
                     ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
                         WildcardTypeName.subtypeOf(
@@ -415,6 +502,27 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
             .build());
 
 
+        classBuilder.addMethod(MethodSpec.methodBuilder("paginateWith" + pluralize(capitalizeFirst(hasOneRelationFieldName)))
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(ClassName.get("promise.db", "PageToken"), "after")
+            .addParameter(int.class, "limit")
+            .returns(ParameterizedTypeName.get(ClassName.get("promise.db", "Page"),
+                WildcardTypeName.subtypeOf(
+                    ClassName.get(element.asType())
+                )
+            ))
+            .addCode(CodeBlock.builder()
+                .addStatement("$T page = " + getParentElementTableVarName + ".find().paginateDescendingAfter(after, limit)",
+                    ParameterizedTypeName.get(ClassName.get("promise.db", "Page"),
+                        WildcardTypeName.subtypeOf(
+                            ClassName.get(element.asType())
+                        )
+                    ))
+                .addStatement("populateWith" + pluralize(capitalizeFirst(hasOneRelationFieldName)) + "(page.getItems())")
+                .addStatement("return page")
+                .build())
+            .build());
+
         classBuilder.addMethod(MethodSpec.methodBuilder("listWith" + pluralize(capitalizeFirst(hasOneRelationFieldName)))
             .addModifiers(Modifier.PUBLIC)
             .returns(ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
@@ -422,7 +530,11 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                     ClassName.get(element.asType())
                 )
             ))
-            .addCode(CodeBlock.builder()
+            .addCode(joinable ? CodeBlock.builder()
+                .addStatement("return " + getParentElementTableVarName + ".findAllJoined(" + joinQuery + ", "
+                        + relationElementTableVarName + ", $L)",
+                    parentElementTableClassName, joinBinder)
+                .build() : CodeBlock.builder()
                 .addStatement("$T " + parentElementVarNames + " = " + getParentElementTableVarName + ".findAll()",
                     ParameterizedTypeName.get(ClassName.get("promise.model", "IdentifiableList"),
                         WildcardTypeName.subtypeOf(
@@ -468,15 +580,22 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                 )
             ))
             .addCode(CodeBlock.builder()
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    TypeName.get(element.asType()))
-                .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")",
-                    TypeName.get(element.asType()))
-                .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasOneRelationFieldName) + "(get" + capitalizeFirst(hasOneRelationFieldName) + "(" + parentElementVarName + "))")
+                .addStatement("$T<Integer> " + camelCase(relationElementVarName) + "Ids = new $T<>(" + parentElementVarNames + ".size())",
+                    ClassName.get("promise.commons.model", "List"), ClassName.get("promise.commons.model", "List"))
+                .beginControlFlow("for ($T " + parentElementVarName + " : " + parentElementVarNames + ")", ClassName.get(element.asType()))
+                .addStatement("if (" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "() != null) "
+                    + camelCase(relationElementVarName) + "Ids.add(" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "().getId())")
+                .endControlFlow()
+                .addStatement("$T<$T> " + camelCase(relationElementVarNames) + " = new $T<>()",
+                    ClassName.get("android.util", "SparseArray"), ClassName.get(relationElement.asType()), ClassName.get("android.util", "SparseArray"))
+                .addStatement("for ($T " + camelCase(relationElementVarName) + " : " + relationElementTableVarName + ".findAllIn($T.getId(), " + camelCase(relationElementVarName) + "Ids)) "
+                        + camelCase(relationElementVarNames) + ".put(" + camelCase(relationElementVarName) + ".getId(), " + camelCase(relationElementVarName) + ")",
+                    ClassName.get(relationElement.asType()), ClassName.get("promise.db", "FastTable"))
+                .beginControlFlow("for ($T " + parentElementVarName + " : " + parentElementVarNames + ")", ClassName.get(element.asType()))
+                .addStatement("if (" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "() != null) "
+                    + parentElementVarName + ".set" + capitalizeFirst(hasOneRelationFieldName) + "(" + camelCase(relationElementVarNames) + ".get("
+                    + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "().getId()))")
                 .endControlFlow()
-                .endControlFlow(")")
                 .addStatement("return " + parentElementVarNames + "")
                 .build())
             .build());
@@ -486,11 +605,20 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
             .addModifiers(Modifier.PUBLIC)
             .addParameter(TypeName.get(element.asType()), parentElementVarName)
             .addCode(CodeBlock.builder()
+                .beginControlFlow("return " + getParentElementTableVarName + ".getDatabase().runInTransaction(new $T<Long>()",
+                    ClassName.get("java.util.concurrent", "Callable"))
+                .add("@Override\n")
+                .beginControlFlow("public Long call()")
                 .addStatement("long " + camelCase(relationElementVarName) + "Id = " + relationElementTableVarName + ".save(" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "())")
+                .addStatement("if (" + camelCase(relationElementVarName) + "Id <= 0) throw new $T(\"could not save the " + hasOneRelationFieldName + " of \" + " + parentElementVarName + ")", IllegalStateException.class)
                 .addStatement("$T " + camelCase(relationElementVarName) + " = new $T()", relationElement, relationElement)
                 .addStatement(camelCase(relationElementVarName) + ".setId((int) " + camelCase(relationElementVarName) + "Id)")
                 .addStatement(parentElementVarName + ".set" + capitalizeFirst(hasOneRelationFieldName) + "(" + camelCase(relationElementVarName) + ")")
-                .addStatement("return " + getParentElementTableVarName + ".save(" + parentElementVarName + ")")
+                .addStatement("long id = " + getParentElementTableVarName + ".save(" + parentElementVarName + ")")
+                .addStatement("if (id <= 0) throw new $T(\"could not save \" + " + parentElementVarName + ")", IllegalStateException.class)
+                .addStatement("return id")
+                .endControlFlow()
+                .endControlFlow(")")
                 .build())
             .build());
 
@@ -513,16 +641,27 @@ public class RelationsDaoGenerator implements CodeGenerator<List<JavaFile.Builde
                 )
             ), parentElementVarNames)
             .addCode(CodeBlock.builder()
-                .beginControlFlow(parentElementVarNames + ".forEach(new $T<$T>()",
-                    ClassName.get("java.util.function", "Consumer"),
-                    TypeName.get(element.asType()))
+                .beginControlFlow("return " + getParentElementTableVarName + ".getDatabase().runInTransaction(new $T<Boolean>()",
+                    ClassName.get("java.util.concurrent", "Callable"))
                 .add("@Override\n")
-                .beginControlFlow("public void accept($T " + parentElementVarName + ")",
-                    TypeName.get(element.asType()))
-                .addStatement("saveWith" + capitalizeFirst(hasOneRelationFieldName) + "(" + parentElementVarName + ")")
+                .beginControlFlow("public Boolean call()")
+                .addStatement("$T<$T> " + camelCase(relationElementVarNames) + " = new $T<>()",
+                    ClassName.get("promise.model", "IdentifiableList"),
+                    TypeName.get(relationElement.asType()),
+                    ClassName.get("promise.model", "IdentifiableList"))
+                .beginControlFlow("for ($T " + parentElementVarName + " : " + parentElementVarNames + ")", TypeName.get(element.asType()))
+                .addStatement("if (" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "() != null) "
+                    + camelCase(relationElementVarNames) + ".add(" + parentElementVarName + ".get" + capitalizeFirst(hasOneRelationFieldName) + "())")
+                .endControlFlow()
+                .beginControlFlow("if (!" + relationElementTableVarName + ".save(" + camelCase(relationElementVarNames) + "))")
+                .addStatement("throw new $T(\"could not save the " + pluralize(hasOneRelationFieldName) + " of \" + " + parentElementVarNames + ")", IllegalStateException.class)
+                .endControlFlow()
+                .beginControlFlow("if (!" + getParentElementTableVarName + ".save(" + parentElementVarNames + "))")
+                .addStatement("throw new $T(\"could not save \" + " + parentElementVarNames + ")", IllegalStateException.class)
                 .endControlFlow()
-                .endControlFlow(")")
                 .addStatement("return true")
+                .endControlFlow()
+                .endControlFlow(")")
                 .build())
             .build());
 
@@ -14,15 +14,22 @@
 package promise.database.compiler;
 
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 
+import kotlin.Pair;
+
 import promise.database.Entity;
 import promise.database.Table;
 import promise.database.compiler.utils.LogUtil;
@@ -51,6 +58,81 @@ public class TableAnnotationGenerator implements CodeGenerator<AnnotationSpec> {
     return stmt.toString();
   }
 
+  /**
+   * the same values as the annotation, read by the generated database without reflection
+   *
+   * @param createStatements see {@link #getCreateStatements(List)}
+   */
+  public FieldSpec generateMetadataField(List<String> createStatements) throws Exception {
+    Entity.CompoundIndex[] compoundIndices = PersistableEntityUtilsKt.getTableCompoundIndices((TypeElement) element);
+    String[] indices = PersistableEntityUtilsKt.getTableIndices((TypeElement) element);
+    String tableName = PersistableEntityUtilsKt.getTableName(element);
+    ClassName metadataClassName = ClassName.get("promise.db", "TableMetadata");
+    CodeBlock.Builder initializer = CodeBlock.builder()
+        .add("new $T($S, new String[]{", metadataClassName, tableName);
+    if (indices != null) for (int i = 0; i < indices.length; i++) {
+      initializer.add(i == 0 ? "$S" : ", $S", indices[i]);
+    }
+    initializer.add("}, new $T[]{", metadataClassName.nestedClass("CompoundIndex"));
+    for (int i = 0; i < compoundIndices.length; i++) {
+      Entity.CompoundIndex compoundIndex = compoundIndices[i];
+      initializer.add(i == 0 ? "\n" : ",\n");
+      initializer.add("new $T($L, new String[]{", metadataClassName.nestedClass("CompoundIndex"), compoundIndex.unique());
+      for (int j = 0; j < compoundIndex.columns().length; j++) {
+        initializer.add(j == 0 ? "$S" : ", $S", compoundIndex.columns()[j]);
+      }
+      initializer.add("})");
+    }
+    initializer.add("}, new String[]{");
+    for (int i = 0; i < createStatements.size(); i++) {
+      initializer.add(i == 0 ? "\n$S" : ",\n$S", createStatements.get(i));
+    }
+    initializer.add("})");
+    return FieldSpec.builder(metadataClassName, "METADATA")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer(initializer.build())
+        .build();
+  }
+
+  /**
+   * the CREATE TABLE statement followed by the CREATE INDEX statements of the table
+   *
+   * @param columnDefinitions index and create definition of the columns, null to build the statements at runtime
+   * @return the statements, empty when they can only be built at runtime
+   */
+  public List<String> getCreateStatements(List<Pair<Integer, String>> columnDefinitions) throws Exception {
+    List<String> statements = new ArrayList<>();
+    if (columnDefinitions == null) return statements;
+    Entity.CompoundIndex[] compoundIndices = PersistableEntityUtilsKt.getTableCompoundIndices((TypeElement) element);
+    String[] indices = PersistableEntityUtilsKt.getTableIndices((TypeElement) element);
+    String tableName = PersistableEntityUtilsKt.getTableName(element);
+    statements.add(getCreateTableStatement(tableName, columnDefinitions));
+    for (Entity.CompoundIndex compoundIndex : compoundIndices)
+      statements.add(getCompoundIndexStatement(tableName, compoundIndex));
+    if (indices != null) for (String index : indices)
+      statements.add("CREATE INDEX IF NOT EXISTS idx_" + index + " ON " + tableName + " (" + index + ");");
+    return statements;
+  }
+
+  /**
+   * the same statement FastTable builds from its columns, the id column first and the timestamps last
+   */
+  private String getCreateTableStatement(String tableName, List<Pair<Integer, String>> columnDefinitions) {
+    List<Pair<Integer, String>> sorted = new ArrayList<>(columnDefinitions);
+    sorted.sort(Comparator.comparing(Pair::getFirst));
+    StringBuilder stmt = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(tableName)
+        .append("(`id` INTEGER PRIMARY KEY AUTOINCREMENT, ");
+    for (Pair<Integer, String> definition : sorted) stmt.append(definition.getSecond()).append(", ");
+    return stmt.append("`CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );").toString();
+  }
+
+  private String getCompoundIndexStatement(String tableName, Entity.CompoundIndex compoundIndex) {
+    String columnNames = String.join("_", compoundIndex.columns());
+    String columns = String.join(", ", compoundIndex.columns());
+    return (compoundIndex.unique() ? "CREATE UNIQUE INDEX" : "CREATE INDEX") +
+        " IF NOT EXISTS idx_" + columnNames + " ON " + tableName + " (" + columns + ");";
+  }
+
   @Override
   public AnnotationSpec generate() throws Exception {
 
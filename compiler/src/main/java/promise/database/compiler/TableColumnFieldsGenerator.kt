@@ -40,6 +40,11 @@ class TableColumnFieldsGenerator(
 
   var genColValues: ArrayList<Pair<Pair<String, Element>, String>> = ArrayList()
 
+  /**
+   * index and create definition of the generated columns, null if a column type is not known at compile time
+   */
+  var columnDefinitions: ArrayList<Pair<Int, String>>? = ArrayList()
+
   override fun generate(): Map<Pair<Element, String>, FieldSpec> {
     val map = HashMap<Pair<Element, String>, FieldSpec>()
     setElements.filter {
@@ -58,6 +63,7 @@ class TableColumnFieldsGenerator(
               ClassName.get("promise.db", "Column"),
               TypeName.get(String::class.java))
           val columnInitializer = getColumnInitializer(element, ClassName.get(String::class.java))
+          addColumnDefinition(nameOfColumn, columnInitializer, i + 1)
           val spec = FieldSpec.builder(parameterizedColumnTypeName, colVariableName)
               .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
               .initializer(CodeBlock.of("""
@@ -77,6 +83,7 @@ class TableColumnFieldsGenerator(
               ClassName.get("promise.db", "Column"),
               TypeName.get(Integer::class.java))
           val columnInitializer = getColumnInitializer(element, ClassName.get(Integer::class.java))
+          addColumnDefinition(nameOfColumn, columnInitializer, i + 1)
           val spec = FieldSpec.builder(parameterizedColumnTypeName, colVariableName)
               .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
               .initializer(CodeBlock.of("""
@@ -106,6 +113,7 @@ class TableColumnFieldsGenerator(
         ClassName.get("promise.db", "Column"),
         variableClassType)
     val columnInitializer = getColumnInitializer(element, variableClassType)
+    addColumnDefinition(nameOfColumn, columnInitializer, i + 1)
     return FieldSpec.builder(parameterizedColumnTypeName, colVariableName)
         .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
         .initializer(CodeBlock.of("""
@@ -115,6 +123,29 @@ class TableColumnFieldsGenerator(
         .build()
   }
 
+  private fun addColumnDefinition(nameOfColumn: String, columnInitializer: String, index: Int) {
+    val description = getColumnDescription(columnInitializer)
+    if (description == null) columnDefinitions = null
+    else columnDefinitions?.add(Pair(index, "`$nameOfColumn` $description"))
+  }
+
+  /**
+   * the description Column.Type gives the initializer at runtime
+   */
+  private fun getColumnDescription(columnInitializer: String): String? {
+    val match = Regex("""Column\.Type\.(\w+)\.(\w+)\((-?\d*)\)""").matchEntire(columnInitializer) ?: return null
+    val (type, constraint, arg) = match.destructured
+    val prefix = if (type == "VARCHAR") "$type ($arg)" else type
+    return when (constraint) {
+      "NULLABLE" -> "$prefix "
+      "NOT_NULL" -> "$prefix NOT NULL "
+      "UNIQUE" -> "$prefix NOT NULL UNIQUE"
+      "PRIMARY_KEY" -> "$prefix PRIMARY KEY"
+      "DEFAULT" -> "$prefix DEFAULT $arg"
+      else -> null
+    }
+  }
+
   private fun getColumnInitializer(element: Element, classTypeName: TypeName): String {
     var str = "Column.Type"
     if (classTypeName.isSameAs(Integer::class.java) ||
@@ -130,7 +161,7 @@ class TableColumnFieldsGenerator(
           str += ".DEFAULT(${annotation.default})"
         } else {
           if (annotation.nullable) str += ".NULLABLE()"
-          else if (!annotation.nullable) str += ".NON_NULL()"
+          else if (!annotation.nullable) str += ".NOT_NULL()"
         }
       } else str += ".NULLABLE()"
     } else if (classTypeName.isSameAs(String::class.java)) {
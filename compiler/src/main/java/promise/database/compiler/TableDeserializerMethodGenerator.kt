@@ -29,6 +29,10 @@ import promise.database.compiler.utils.toTypeName
 import javax.lang.model.element.Element
 import javax.lang.model.element.Modifier
 
+/**
+ * generates the deserialize methods of a table, the rows are read at the indexes of the columns
+ * resolved once per cursor, in the same order as getColumns
+ */
 class TableDeserializerMethodGenerator(
     private val typeDataTypePack: String,
     private val typeDataType: String,
@@ -39,11 +43,11 @@ class TableDeserializerMethodGenerator(
     val varName = typeDataType.camelCase()
     codeBlock.beginControlFlow("try")
     codeBlock.addStatement("$typeDataType $varName = new $typeDataType()")
-    columns.forEach {
+    columns.forEachIndexed { i, it ->
       generateSetStatement(
           codeBlock,
           varName,
-          it.first.first, it.first.second, it.second)
+          it.first.first, it.first.second, "indexes[$i]")
     }
     codeBlock.addStatement("return $varName")
     codeBlock.endControlFlow()
@@ -52,6 +56,7 @@ class TableDeserializerMethodGenerator(
 
     return MethodSpec.methodBuilder("deserialize")
         .addParameter(ClassName.get("android.database", "Cursor"), "e")
+        .addParameter(IntArray::class.java, "indexes")
         .addAnnotation(Override::class.java)
         .addModifiers(Modifier.PUBLIC)
         .returns(ClassName.get(typeDataTypePack, typeDataType))
@@ -59,27 +64,46 @@ class TableDeserializerMethodGenerator(
         .build()
   }
 
+  /**
+   * @return the deserialize method reading a single row, resolving the indexes for it
+   */
+  fun generateSingleRow(): MethodSpec =
+      MethodSpec.methodBuilder("deserialize")
+          .addParameter(ClassName.get("android.database", "Cursor"), "e")
+          .addAnnotation(Override::class.java)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(ClassName.get(typeDataTypePack, typeDataType))
+          .addStatement("return deserialize(e, columnIndexes(e))")
+          .build()
+
   private fun generateSetStatement(
       codeBlock: CodeBlock.Builder,
       objectName: String,
       varName: String,
       varType: Element,
-      colName: String) {
-    if (varType.toTypeName().isSameAs(Boolean::class.java)) {
-      codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(e.${getCursorReturn(varType.toTypeName())}(${colName}.getIndex(e)) == 1)")
+      index: String) {
+    val typeName = varType.toTypeName()
+    if (typeName.isSameAs(Boolean::class.java)) {
+      codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(${nullable(typeName, index, "e.getInt($index) == 1")})")
       return
     }
     if (varType.checkIfHasTypeConverter()) {
       val executableFn = varType.getConverterCompatibleMethod(ConverterTypes.DESERIALIZER)
       if (executableFn != null)
-        codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(typeConverter.${executableFn.simpleName}(e.${getCursorReturn(TypeName.get(String::class.java))}(${colName}.getIndex(e))))")
+        codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(typeConverter.${executableFn.simpleName}(e.${getCursorReturn(TypeName.get(String::class.java))}($index)))")
     } else if (varType.isElementAnnotatedAsRelation()) {
-      codeBlock.add(JavaUtils.generateDeserializerRelationSetStatement(objectName, varType, colName))
+      codeBlock.add(JavaUtils.generateDeserializerRelationSetStatement(objectName, varType, index))
     } else {
-      codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(e.${getCursorReturn(varType.toTypeName())}(${colName}.getIndex(e)))")
+      codeBlock.addStatement("$objectName.set${varName.capitalizeFirst()}(${nullable(typeName, index, "e.${getCursorReturn(typeName)}($index)")})")
     }
   }
 
+  /**
+   * boxed columns read their nulls back as null
+   */
+  private fun nullable(typeName: TypeName, index: String, value: String): String =
+      if (typeName.isBoxedPrimitive) "e.isNull($index) ? null : $value" else value
+
   private fun getCursorReturn(varType: TypeName): String =
       when {
         varType.isSameAs(Integer::class.java) -> "getInt"
@@ -33,7 +33,9 @@ import javax.lang.model.util.ElementFilter
 
 class TableMetaDataWriter(
     private val entityElement: Element,
-    private val elements: Map<Element, String>) {
+    private val elements: Map<Element, String>,
+    private val columns: List<String> = emptyList(),
+    private val createStatements: List<String> = emptyList()) {
 
   companion object {
     val tableMetaData: ArrayList<TableMetaData> = ArrayList()
@@ -134,6 +136,8 @@ class TableMetaDataWriter(
         }
 
     metaData.fields = fields
+    metaData.columns = columns
+    metaData.createStatements = createStatements
     metaData.tableName = entityElement.getTableName()
     tableMetaData.add(metaData)
     return tableMigrations
@@ -29,7 +29,9 @@ import javax.lang.model.element.Modifier
 
 class TableMigrationFieldGenerator(
     private val entityElement: Element,
-    private val elements: Map<Element, String>) : CodeGenerator<MethodSpec?> {
+    private val elements: Map<Element, String>,
+    private val columns: kotlin.collections.List<String>,
+    private val createStatements: kotlin.collections.List<String>) : CodeGenerator<MethodSpec?> {
 
   private fun buildMigration(
       versionChange: VersionChange,
@@ -48,14 +50,10 @@ class TableMigrationFieldGenerator(
               }
               codeBlock.addStatement("addColumns(x, $list)")
             }
-            MigrationOptions.DROP -> {
-              val list: StringBuilder = StringBuilder("")
-              category.list().forEachIndexed { index, tableMigration ->
-                list.append("${tableMigration.field}")
-                if (index != category.list().size - 1) list.append(", ")
-              }
-              codeBlock.addStatement("dropColumns(x, $list)")
-            }
+            /*
+             * the dropped fields are no longer columns of the table, rebuilding it leaves them out
+             */
+            MigrationOptions.DROP -> codeBlock.addStatement("rebuild(x)")
             MigrationOptions.CREATE_INDEX -> category.list().forEach {
               codeBlock.addStatement("addIndex(x, \"${it.field}\")")
             }
@@ -74,7 +72,7 @@ class TableMigrationFieldGenerator(
       it.key.getAnnotation(HasMany::class.java) == null &&
           it.key.getAnnotation(Ignore::class.java) == null
     }
-    val tableMetaDataWriter = TableMetaDataWriter(entityElement, elements2)
+    val tableMetaDataWriter = TableMetaDataWriter(entityElement, elements2, columns, createStatements)
 
 
     val tableMigrations = tableMetaDataWriter.process()
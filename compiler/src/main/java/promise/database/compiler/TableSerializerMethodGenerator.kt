@@ -18,9 +18,9 @@ import com.squareup.javapoet.CodeBlock
 import com.squareup.javapoet.MethodSpec
 import promise.database.compiler.utils.ConverterTypes
 import promise.database.compiler.utils.JavaUtils
-import promise.database.compiler.utils.capitalizeFirst
 import promise.database.compiler.utils.checkIfHasTypeConverter
 import promise.database.compiler.utils.getConverterCompatibleMethod
+import promise.database.compiler.utils.getterName
 import promise.database.compiler.utils.isElementAnnotatedAsRelation
 import promise.database.compiler.utils.isSameAs
 import promise.database.compiler.utils.toTypeName
@@ -54,15 +54,21 @@ class TableSerializerMethodGenerator(
   private fun generatePutStatement(
       codeBlock: CodeBlock.Builder,
       typeVariable: String, columnName: String, varTypeName: Element) {
-    if (varTypeName.toTypeName().isSameAs(Boolean::class.java)) {
-      codeBlock.addStatement("values.put(${columnName}.getName(), t.is${typeVariable.capitalizeFirst()}() ? 1 : 0)")
+    val getter = "t.${varTypeName.getterName()}()"
+    val typeName = varTypeName.toTypeName()
+    if (typeName.isSameAs(Boolean::class.java)) {
+      if (typeName.isPrimitive) codeBlock.addStatement("values.put(${columnName}.getName(), $getter ? 1 : 0)")
+      else {
+        codeBlock.addStatement("\$T ${typeVariable}Value = $getter", typeName)
+        codeBlock.addStatement("values.put(${columnName}.getName(), ${typeVariable}Value == null ? null : ${typeVariable}Value ? 1 : 0)")
+      }
       return
     }
     if (varTypeName.checkIfHasTypeConverter()) {
       val executableFn = varTypeName.getConverterCompatibleMethod(ConverterTypes.SERIALIZER)
       if (executableFn != null)
-        codeBlock.addStatement("values.put(${columnName}.getName(), typeConverter.${executableFn.simpleName}(t.get${typeVariable.capitalizeFirst()}()))")
+        codeBlock.addStatement("values.put(${columnName}.getName(), typeConverter.${executableFn.simpleName}($getter))")
     } else if (varTypeName.isElementAnnotatedAsRelation())
-      codeBlock.add(JavaUtils.generateSerializerRelationPutStatement(varTypeName, columnName)) else codeBlock.addStatement("values.put(${columnName}.getName(), t.get${typeVariable.capitalizeFirst()}())")
+      codeBlock.add(JavaUtils.generateSerializerRelationPutStatement(varTypeName, columnName)) else codeBlock.addStatement("values.put(${columnName}.getName(), $getter)")
   }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.compiler
+
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.ClassName
+import com.squareup.javapoet.CodeBlock
+import com.squareup.javapoet.MethodSpec
+import com.squareup.javapoet.TypeName
+import promise.database.compiler.utils.ConverterTypes
+import promise.database.compiler.utils.camelCase
+import promise.database.compiler.utils.checkIfHasTypeConverter
+import promise.database.compiler.utils.getConverterCompatibleMethod
+import promise.database.compiler.utils.getterName
+import promise.database.compiler.utils.isElementAnnotatedAsRelation
+import promise.database.compiler.utils.isSameAs
+import promise.database.compiler.utils.toTypeName
+import javax.lang.model.element.Element
+import javax.lang.model.element.Modifier
+
+/**
+ * generates the [promise.db.StatementBinder] implementation of a table,
+ * binds every column of the entity by position in the same order as getColumns
+ */
+class TableStatementBinderMethodGenerator(
+    private val typeDataTypePack: String,
+    private val typeDataType: String,
+    private val columns: List<Pair<Pair<String, Element>, String>>) : CodeGenerator<MethodSpec> {
+
+  override fun generate(): MethodSpec {
+    val codeBlock = CodeBlock.builder()
+    columns.forEachIndexed { i, it ->
+      generateBindStatement(codeBlock, i + 1, it.first.first, it.first.second)
+    }
+    return MethodSpec.methodBuilder("bind")
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(ClassName.get("androidx.sqlite.db", "SupportSQLiteStatement"), "statement")
+        .addParameter(ClassName.get(typeDataTypePack, typeDataType), "t")
+        .addAnnotation(Override::class.java)
+        .addCode(codeBlock.build())
+        .build()
+  }
+
+  /**
+   * @return the getBoundColumnNames method listing the column names in binding order
+   */
+  fun generateBoundColumnNames(): MethodSpec =
+      MethodSpec.methodBuilder("getBoundColumnNames")
+          .addModifiers(Modifier.PUBLIC)
+          .addAnnotation(Override::class.java)
+          .returns(ArrayTypeName.of(String::class.java))
+          .addStatement("return new String[]{${columns.joinToString(", ") { "${it.second}.getName()" }}}")
+          .build()
+
+  private fun generateBindStatement(
+      codeBlock: CodeBlock.Builder,
+      index: Int,
+      typeVariable: String,
+      varTypeName: Element) {
+    val getter = "t.${varTypeName.getterName()}()"
+    val typeName = varTypeName.toTypeName()
+    if (typeName.isSameAs(Boolean::class.java)) {
+      if (typeName.isPrimitive)
+        codeBlock.addStatement("statement.bindLong($index, $getter ? 1 : 0)")
+      else generateNullableBind(codeBlock, index, typeVariable, typeName, getter, "bindLong", "${typeVariable}Value ? 1 : 0")
+      return
+    }
+    if (varTypeName.checkIfHasTypeConverter()) {
+      val executableFn = varTypeName.getConverterCompatibleMethod(ConverterTypes.SERIALIZER)
+      if (executableFn != null) generateNullableBind(codeBlock, index, typeVariable,
+          TypeName.get(String::class.java), "typeConverter.${executableFn.simpleName}($getter)", "bindString", "${typeVariable}Value")
+      else codeBlock.addStatement("statement.bindNull($index)")
+      return
+    }
+    if (varTypeName.isElementAnnotatedAsRelation()) {
+      val variableName = varTypeName.simpleName.toString().camelCase()
+      codeBlock.addStatement("\$T $variableName = $getter", typeName)
+      codeBlock.addStatement("statement.bindLong($index, $variableName != null ? $variableName.getId() : 0)")
+      return
+    }
+    val method = getBindMethod(typeName)
+    if (typeName.isPrimitive) codeBlock.addStatement("statement.$method($index, $getter)")
+    else generateNullableBind(codeBlock, index, typeVariable, typeName, getter, method, "${typeVariable}Value")
+  }
+
+  private fun generateNullableBind(
+      codeBlock: CodeBlock.Builder,
+      index: Int,
+      typeVariable: String,
+      typeName: TypeName,
+      getter: String,
+      method: String,
+      argument: String) {
+    codeBlock.addStatement("\$T ${typeVariable}Value = $getter", typeName)
+    codeBlock.addStatement("if (${typeVariable}Value == null) statement.bindNull($index)")
+    codeBlock.addStatement("else statement.$method($index, $argument)")
+  }
+
+  private fun getBindMethod(varType: TypeName): String =
+      when {
+        varType.isSameAs(Integer::class.java) -> "bindLong"
+        varType.isSameAs(Long::class.java) -> "bindLong"
+        varType.isSameAs(Double::class.java) -> "bindDouble"
+        varType.isSameAs(Float::class.java) -> "bindDouble"
+        else -> "bindString"
+      }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.compiler.migration
+
+import promise.database.MigrationOptions
+
+/**
+ * the statements that take the schema of one snapshot to the schema of the next
+ * columns that can be appended are added with ALTER TABLE, tables that lose or change a column are rebuilt
+ */
+class SchemaDiff(private val from: DatabaseMetaData, private val to: DatabaseMetaData) {
+
+  /**
+   * the ordered statements, null if either snapshot was written without the create statements of its tables
+   */
+  fun statements(): List<String>? {
+    if (!hasSchema(from) || !hasSchema(to)) return null
+    val statements = ArrayList<String>()
+    val oldTables = from.tableMetaData.associateBy { it.tableName }
+    val newTables = to.tableMetaData.associateBy { it.tableName }
+    oldTables.keys.filter { !newTables.containsKey(it) }.forEach {
+      statements.add("DROP TABLE IF EXISTS $it;")
+    }
+    to.tableMetaData.forEach { table ->
+      val oldTable = oldTables[table.tableName]
+      if (oldTable == null) statements.addAll(table.createStatements)
+      else statements.addAll(diff(oldTable, table))
+      statements.addAll(indexMigrations(table))
+    }
+    return statements
+  }
+
+  private fun diff(oldTable: TableMetaData, table: TableMetaData): List<String> {
+    val oldColumns = oldTable.columns.associateBy { columnName(it) }
+    val columns = table.columns.associateBy { columnName(it) }
+    val changed = oldColumns.any { columns[it.key] != it.value }
+    val added = columns.filter { !oldColumns.containsKey(it.key) }.values
+    if (changed || added.any { !canBeAdded(it) }) return rebuild(table, oldColumns, columns)
+    val statements = ArrayList<String>()
+    added.forEach { statements.add("ALTER TABLE ${table.tableName} ADD COLUMN $it;") }
+    val oldIndexes = oldTable.createStatements.drop(1).associateBy { indexName(it) }
+    val indexes = table.createStatements.drop(1).associateBy { indexName(it) }
+    oldIndexes.filter { indexes[it.key] != it.value }.keys.forEach { statements.add("DROP INDEX IF EXISTS $it;") }
+    indexes.filter { oldIndexes[it.key] != it.value }.values.forEach { statements.add(it) }
+    return statements
+  }
+
+  /**
+   * creates the table under a new name, copies the kept columns and swaps it in, dropping the old table drops its indexes
+   * kept columns that become NOT NULL copy their nulls as the default of the column
+   */
+  private fun rebuild(table: TableMetaData, oldColumns: Map<String, String>, newColumns: Map<String, String>): List<String> {
+    val name = table.tableName
+    val newName = REBUILD_PREFIX + name
+    val kept = listOf(ID) + oldColumns.keys.filter { newColumns.containsKey(it) } + listOf(CREATED_AT, UPDATED_AT)
+    val columns = kept.joinToString(", ") { "`$it`" }
+    val values = kept.joinToString(", ") {
+      val definition = newColumns[it]
+      if (definition != null && definition.contains("NOT NULL") && !oldColumns.getValue(it).contains("NOT NULL"))
+        "COALESCE(`$it`, ${defaultValue(definition)})"
+      else "`$it`"
+    }
+    val statements = ArrayList<String>()
+    statements.add("DROP TABLE IF EXISTS $newName;")
+    statements.add(table.createStatements.first().replaceFirst("EXISTS $name(", "EXISTS $newName("))
+    statements.add("INSERT INTO $newName ($columns) SELECT $values FROM $name;")
+    statements.add("DROP TABLE $name;")
+    statements.add("ALTER TABLE $newName RENAME TO $name;")
+    statements.addAll(table.createStatements.drop(1))
+    return statements
+  }
+
+  /**
+   * indexes declared with Migrate annotations for this version change
+   */
+  private fun indexMigrations(table: TableMetaData): List<String> = table.migrations.filter {
+    it.action == MigrationOptions.CREATE_INDEX && it.versionChange != null &&
+        it.versionChange!!.fromVersion >= from.dbVersion && it.versionChange!!.toVersion <= to.dbVersion
+  }.map { "CREATE INDEX IF NOT EXISTS idx_${it.field} ON ${table.tableName} (${it.field});" }
+
+  private fun hasSchema(metaData: DatabaseMetaData): Boolean =
+      metaData.tableMetaData.isNotEmpty() && metaData.tableMetaData.all { it.createStatements.isNotEmpty() }
+
+  private fun columnName(definition: String): String = definition.substring(1, definition.indexOf('`', 1))
+
+  private fun indexName(statement: String): String = statement.substringAfter("EXISTS ").substringBefore(' ')
+
+  /**
+   * the declared default of the column, otherwise the zero value of its type
+   */
+  private fun defaultValue(definition: String): String {
+    val declared = Regex("""DEFAULT (\S+)""").find(definition)
+    if (declared != null) return declared.groupValues[1]
+    val type = definition.substringAfter("` ").substringBefore(' ')
+    return when (type) {
+      "TEXT", "VARCHAR" -> "''"
+      "BLOB" -> "X''"
+      else -> "0"
+    }
+  }
+
+  /**
+   * sqlite only appends columns that may be null and are not unique
+   */
+  private fun canBeAdded(definition: String): Boolean =
+      !definition.contains("NOT NULL") && !definition.contains("UNIQUE") && !definition.contains("PRIMARY KEY")
+
+  companion object {
+    private const val REBUILD_PREFIX = "promise_rebuild_"
+    private const val ID = "id"
+    private const val CREATED_AT = "CREATED_AT"
+    private const val UPDATED_AT = "UPDATED_AT"
+  }
+}
@@ -25,6 +25,18 @@ class TableMetaData {
   var tableName: String = ""
   var fields: List<Field> = emptyList()
 
+  /**
+   * create definitions of the columns, without the id and timestamps
+   */
+  @JsonInclude(JsonInclude.Include.NON_EMPTY)
+  var columns: List<String> = emptyList()
+
+  /**
+   * the CREATE TABLE statement followed by the CREATE INDEX statements
+   */
+  @JsonInclude(JsonInclude.Include.NON_EMPTY)
+  var createStatements: List<String> = emptyList()
+
   @JsonInclude(JsonInclude.Include.NON_NULL)
   var migrations: List<TableMigration> = emptyList()
 }
\ No newline at end of file
@@ -138,11 +138,11 @@ public class JavaUtils {
   public static CodeBlock generateDeserializerRelationSetStatement(
       String entitySetName,
       Element element,
-      String colName) {
+      String index) {
     CodeBlock.Builder codeBlock = CodeBlock.builder();
     String variableName = PersistableEntityUtilsKt.camelCase(element.getSimpleName().toString());
     String variableNameId = variableName + "Id";
-    codeBlock.addStatement("int " + variableNameId + " = e.getInt(" + colName + ".getIndex(e))");
+    codeBlock.addStatement("int " + variableNameId + " = e.getInt(" + index + ")");
     codeBlock.beginControlFlow("if(" + variableNameId + " != 0)");
     codeBlock.addStatement("$T " + variableName + " = new $T()",
         TypeName.get(element.asType()),
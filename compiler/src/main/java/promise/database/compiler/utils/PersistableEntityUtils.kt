@@ -180,6 +180,22 @@ fun String.capitalizeFirst(): String = this.replaceFirst(this.first(), this.firs
 
 fun String.camelCase(): String = this.replaceFirst(this.first(), this.first().toLowerCase())
 
+/**
+ * name of the method reading the field, the isX or getX the entity declares, or the property name
+ * kotlin gives the getter of an isX property, falls back to isX for booleans and getX otherwise
+ */
+fun Element.getterName(): String {
+  val name = simpleName.toString()
+  val isBoolean = toTypeName().isSameAs(Boolean::class.java)
+  val candidates = if (isBoolean) listOf("is${name.capitalizeFirst()}", "get${name.capitalizeFirst()}", name)
+  else listOf("get${name.capitalizeFirst()}", name)
+  val methods = ElementFilter.methodsIn(enclosingElement.enclosedElements)
+      .filter { it.parameters.isEmpty() }
+      .map { it.simpleName.toString() }
+      .toSet()
+  return candidates.firstOrNull { methods.contains(it) } ?: candidates.first()
+}
+
 fun TypeElement.checkIfAnyElementNeedsTypeConverter(): Boolean = ElementFilter.fieldsIn(this.enclosedElements).any {
   it.checkIfHasTypeConverter()
 }
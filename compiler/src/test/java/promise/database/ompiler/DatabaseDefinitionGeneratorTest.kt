@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class DatabaseDefinitionGeneratorTest {
+
+  private val database = ProcessorTestSources.source("test.LibraryDatabaseImpl")
+
+  @Test
+  fun definitionListsEveryTableWithItsFactory() {
+    assertTrue(database.contains(
+        "private static final DatabaseDefinition DEFINITION = new DatabaseDefinition(1, new TableDefinition<?>[]{"))
+    assertTrue(database.contains("new TableDefinition<>(AuthorsTable.class, AuthorsTable.METADATA, AuthorsTable::new)"))
+    assertTrue(database.contains("new TableDefinition<>(BooksTable.class, BooksTable.METADATA, BooksTable::new)"))
+  }
+
+  @Test
+  fun definitionCarriesTheDatabaseSettings() {
+    assertTrue(database.contains("}, false, -1, new SchemaMigration[]{}, PragmaProfile.of(PragmaPreset.NONE));"))
+  }
+
+  @Test
+  fun everyFactoryMethodCreatesFromTheDefinition() {
+    val creates = Regex("""FastDatabase\.createDatabase\((\w+),""").findAll(database).map { it.groupValues[1] }.toList()
+    assertTrue(creates.size >= 4)
+    assertTrue(creates.all { it == "DEFINITION" })
+  }
+
+  @Test
+  fun entityTablesAreResolvedWithoutReflection() {
+    assertTrue(database.contains(
+        "entityTables = new FastTable<?>[]{database.obtain(AuthorsTable.class), database.obtain(BooksTable.class)};"))
+    listOf("Class.forName", "newInstance", "getDeclaredConstructor", "getAnnotation").forEach {
+      assertFalse("$it is called", database.contains(it))
+    }
+  }
+
+  @Test
+  fun entityClassesSwitchStraightToTheirTable() {
+    assertTrue(database.contains("switch (entityClass.getName())"))
+    assertTrue(database.contains("case \"test.Author\": return (FastTable<T>) tables[0];"))
+    assertTrue(database.contains("case \"test.Book\": return (FastTable<T>) tables[1];"))
+    assertFalse(database.contains("ENTITY_CLASSES"))
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import promise.database.compiler.PromiseDatabaseCompiler
+import java.io.File
+import java.nio.file.Files
+import javax.tools.Diagnostic
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * entities run through the processor by the generator tests,
+ * an author has many books and a book has one author, both tables have indexes
+ * the runtime types the processor looks up are declared as sources since the database module is not on the classpath
+ */
+internal object ProcessorTestSources {
+
+  private val runtime = listOf(
+      Source("promise.commons.model.Identifiable",
+          "package promise.commons.model;",
+          "public interface Identifiable<K> { K getId(); void setId(K id); }"),
+      Source("promise.db.FastDatabase",
+          "package promise.db;",
+          "public abstract class FastDatabase {}"),
+      Source("promise.db.PromiseDatabase",
+          "package promise.db;",
+          "public abstract class PromiseDatabase { public PromiseDatabase(FastDatabase database) {} }"),
+      Source("promise.db.ActiveRecord",
+          "package promise.db;",
+          "public abstract class ActiveRecord<T> implements promise.commons.model.Identifiable<Integer> {",
+          "  private Integer id;",
+          "  public Integer getId() { return id; }",
+          "  public void setId(Integer id) { this.id = id; }",
+          "}"))
+
+  private val entities = listOf(
+      Source("test.Author",
+          "package test;",
+          "import java.util.List;",
+          "import promise.commons.model.Identifiable;",
+          "import promise.database.Entity;",
+          "import promise.database.HasMany;",
+          "import promise.database.Index;",
+          "import promise.database.PrimaryKeyAutoIncrement;",
+          "@Entity",
+          "public class Author implements Identifiable<Integer> {",
+          "  @PrimaryKeyAutoIncrement",
+          "  private int id;",
+          "  @Index",
+          "  private String name;",
+          "  private boolean active;",
+          "  private Boolean verified;",
+          "  @HasMany",
+          "  private List<Book> books;",
+          "  public Integer getId() { return id; }",
+          "  public void setId(Integer id) { this.id = id; }",
+          "  public String getName() { return name; }",
+          "  public void setName(String name) { this.name = name; }",
+          "  public boolean isActive() { return active; }",
+          "  public void setActive(boolean active) { this.active = active; }",
+          "  public Boolean getVerified() { return verified; }",
+          "  public void setVerified(Boolean verified) { this.verified = verified; }",
+          "  public List<Book> getBooks() { return books; }",
+          "  public void setBooks(List<Book> books) { this.books = books; }",
+          "}"),
+      Source("test.Book",
+          "package test;",
+          "import promise.commons.model.Identifiable;",
+          "import promise.database.ColumnInfo;",
+          "import promise.database.Entity;",
+          "import promise.database.HasOne;",
+          "import promise.database.PrimaryKeyAutoIncrement;",
+          "@Entity(compoundIndices = {@Entity.CompoundIndex(columns = {\"title\", \"price\"}, unique = true)})",
+          "public class Book implements Identifiable<Integer> {",
+          "  @PrimaryKeyAutoIncrement",
+          "  private int id;",
+          "  @ColumnInfo(length = 40, unique = true)",
+          "  private String title;",
+          "  private double price;",
+          "  @HasOne",
+          "  private Author author;",
+          "  public Integer getId() { return id; }",
+          "  public void setId(Integer id) { this.id = id; }",
+          "  public String getTitle() { return title; }",
+          "  public void setTitle(String title) { this.title = title; }",
+          "  public double getPrice() { return price; }",
+          "  public void setPrice(double price) { this.price = price; }",
+          "  public Author getAuthor() { return author; }",
+          "  public void setAuthor(Author author) { this.author = author; }",
+          "}"),
+      Source("test.LibraryDatabase",
+          "package test;",
+          "import promise.database.DatabaseEntity;",
+          "import promise.db.FastDatabase;",
+          "import promise.db.PromiseDatabase;",
+          "@DatabaseEntity(persistableEntities = {Author.class, Book.class}, version = 1)",
+          "public abstract class LibraryDatabase extends PromiseDatabase {",
+          "  public LibraryDatabase(FastDatabase database) { super(database); }",
+          "}"))
+
+  /**
+   * the generated sources by qualified class name, the processor runs once for all the tests
+   */
+  val generated: Map<String, String> by lazy { generate() }
+
+  /**
+   * @return the generated source of the class
+   */
+  fun source(className: String): String =
+      generated[className] ?: throw AssertionError("$className was not generated, found ${generated.keys}")
+
+  /**
+   * runs only the processor on the entities, the generated sources need the database module to compile
+   * so errors about the types they use are expected and only the files are kept
+   */
+  private fun generate(): Map<String, String> {
+    val root = Files.createTempDirectory("promise-database-test").toFile()
+    try {
+      val sourceDir = File(root, "src")
+      val generatedDir = File(root, "generated").apply { mkdirs() }
+      val files = (runtime + entities).map { source ->
+        File(sourceDir, source.className.replace('.', File.separatorChar) + ".java").apply {
+          parentFile.mkdirs()
+          writeText(source.lines.joinToString("\n"))
+        }
+      }
+      val compiler = ToolProvider.getSystemJavaCompiler()
+      val diagnostics = DiagnosticCollector<JavaFileObject>()
+      compiler.getStandardFileManager(diagnostics, null, null).use { fileManager ->
+        val task = compiler.getTask(null, fileManager, diagnostics, listOf(
+            "-proc:only",
+            "-classpath", System.getProperty("java.class.path"),
+            "-s", generatedDir.path,
+            "-Apromise.database.projectDir=${File(root, "project").path}"),
+            null, fileManager.getJavaFileObjectsFromFiles(files))
+        task.setProcessors(listOf(PromiseDatabaseCompiler()))
+        task.call()
+      }
+      val generated = generatedDir.walkTopDown().filter { it.isFile && it.name.endsWith(".java") }
+          .associate { it.relativeTo(generatedDir).path.removeSuffix(".java").replace(File.separatorChar, '.') to it.readText() }
+      if (generated.isEmpty()) throw AssertionError("nothing was generated: " +
+          diagnostics.diagnostics.filter { it.kind == Diagnostic.Kind.ERROR }.joinToString("\n"))
+      return generated
+    } finally {
+      root.deleteRecursively()
+    }
+  }
+
+  private class Source(val className: String, vararg val lines: String)
+}
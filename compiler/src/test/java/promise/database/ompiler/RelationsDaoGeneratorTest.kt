@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class RelationsDaoGeneratorTest {
+
+  private val authorDao = ProcessorTestSources.source("test.AuthorRelationsDao")
+
+  private val bookDao = ProcessorTestSources.source("test.BookRelationsDao")
+
+  @Test
+  fun hasManyChildrenAreLoadedInOneQuery() {
+    val populate = method(authorDao, "public IdentifiableList<? extends Author> populateWithBooks(")
+    assertEquals(1, populate.split("booksTable.findAllIn(").size - 1)
+    assertTrue(populate.contains("for (Author author : authors) authorIds.add(author.getId());"))
+    assertTrue(populate.contains("for (Book book : booksTable.findAllIn(BooksTable.authorColumn, authorIds))"))
+  }
+
+  @Test
+  fun hasManyChildrenAreGroupedByParent() {
+    val populate = method(authorDao, "public IdentifiableList<? extends Author> populateWithBooks(")
+    assertTrue(populate.contains("IdentifiableList<Book> group = books.get(book.getAuthor().getId());"))
+    assertTrue(populate.contains("author.setBooks(group != null ? group : new IdentifiableList<Book>());"))
+  }
+
+  @Test
+  fun listsAreNotLoadedPerParent() {
+    assertTrue(method(authorDao, "listWithBooks()").contains("populateWithBooks(authors);"))
+    assertTrue(method(authorDao, "paginateWithBooks(int skip, int limit)").contains("populateWithBooks(authors);"))
+    assertTrue(method(authorDao, "paginateWithBooks(PageToken after, int limit)")
+        .contains("populateWithBooks(page.getItems());"))
+  }
+
+  @Test
+  fun hasOneParentIsJoinedInTheSameQuery() {
+    val list = method(bookDao, "listWithAuthors()")
+    assertTrue(list.contains(
+        "return booksTable.findAllJoined(booksTable.joinQuery(BooksTable.authorColumn, authorsTable), authorsTable, "))
+    assertTrue(list.contains("book.setAuthor(author);"))
+  }
+
+  @Test
+  fun hasOnePageIsJoinedWithItsOrderAndLimit() {
+    assertTrue(method(bookDao, "paginateWithAuthors(int skip, int limit)").contains(
+        "booksTable.findAllJoined(booksTable.joinQuery(BooksTable.authorColumn, authorsTable)" +
+            ".orderByDescending(Projection.column(booksTable, FastTable.getId())).take(limit).skip(skip), authorsTable, "))
+  }
+
+  @Test
+  fun hasOneParentsOfAListAreLoadedInOneQuery() {
+    val populate = method(bookDao, "public IdentifiableList<? extends Book> populateWithAuthors(")
+    assertEquals(1, populate.split("authorsTable.findAllIn(").size - 1)
+    assertTrue(populate.contains("book.setAuthor(authors.get(book.getAuthor().getId()));"))
+  }
+
+  /**
+   * the body of the first method whose declaration contains the signature
+   */
+  private fun method(source: String, signature: String): String {
+    val start = source.indexOf(signature)
+    assertTrue("$signature was not generated", start >= 0)
+    var depth = 0
+    var index = source.indexOf('{', start)
+    val bodyStart = index
+    do {
+      when (source[index]) {
+        '{' -> depth++
+        '}' -> depth--
+      }
+      index++
+    } while (depth > 0)
+    return source.substring(bodyStart, index)
+  }
+}
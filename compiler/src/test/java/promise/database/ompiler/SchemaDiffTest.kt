@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import promise.database.MigrationOptions
+import promise.database.compiler.migration.DatabaseMetaData
+import promise.database.compiler.migration.SchemaDiff
+import promise.database.compiler.migration.TableMetaData
+import promise.database.compiler.migration.TableMigration
+import promise.database.compiler.migration.VersionChange
+
+class SchemaDiffTest {
+
+  @Test
+  fun nullableColumnIsAppended() {
+    val from = database(1, table("posts", "`title` TEXT "))
+    val to = database(2, table("posts", "`title` TEXT ", "`body` TEXT "))
+    assertEquals(listOf("ALTER TABLE posts ADD COLUMN `body` TEXT ;"), SchemaDiff(from, to).statements())
+  }
+
+  @Test
+  fun notNullColumnRebuildsTable() {
+    val from = database(1, table("posts", "`title` TEXT "))
+    val to = database(2, table("posts", "`title` TEXT ", "`rating` INTEGER NOT NULL "))
+    assertEquals(listOf(
+        "DROP TABLE IF EXISTS promise_rebuild_posts;",
+        "CREATE TABLE IF NOT EXISTS promise_rebuild_posts(`id` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "`title` TEXT , `rating` INTEGER NOT NULL , `CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );",
+        "INSERT INTO promise_rebuild_posts (`id`, `title`, `CREATED_AT`, `UPDATED_AT`) " +
+            "SELECT `id`, `title`, `CREATED_AT`, `UPDATED_AT` FROM posts;",
+        "DROP TABLE posts;",
+        "ALTER TABLE promise_rebuild_posts RENAME TO posts;"
+    ), SchemaDiff(from, to).statements())
+  }
+
+  @Test
+  fun droppedColumnRebuildsTable() {
+    val from = database(1, table("posts", "`title` TEXT ", "`body` TEXT "))
+    val to = database(2, table("posts", "`title` TEXT "))
+    val statements = SchemaDiff(from, to).statements()!!
+    assertEquals(5, statements.size)
+    assertEquals("INSERT INTO promise_rebuild_posts (`id`, `title`, `CREATED_AT`, `UPDATED_AT`) " +
+        "SELECT `id`, `title`, `CREATED_AT`, `UPDATED_AT` FROM posts;", statements[2])
+  }
+
+  @Test
+  fun columnBecomingNotNullCopiesDefault() {
+    val from = database(1, table("posts", "`title` TEXT ", "`rating` INTEGER "))
+    val to = database(2, table("posts", "`title` TEXT NOT NULL ", "`rating` INTEGER DEFAULT 5"))
+    assertEquals("INSERT INTO promise_rebuild_posts (`id`, `title`, `rating`, `CREATED_AT`, `UPDATED_AT`) " +
+        "SELECT `id`, COALESCE(`title`, ''), `rating`, `CREATED_AT`, `UPDATED_AT` FROM posts;",
+        SchemaDiff(from, to).statements()!![2])
+  }
+
+  @Test
+  fun changedIndexIsRecreated() {
+    val from = database(1, table("posts", "`title` TEXT ").apply {
+      createStatements = createStatements + "CREATE INDEX IF NOT EXISTS idx_title ON posts (title);"
+    })
+    val to = database(2, table("posts", "`title` TEXT ").apply {
+      createStatements = createStatements + "CREATE UNIQUE INDEX IF NOT EXISTS idx_title ON posts (title);"
+    })
+    assertEquals(listOf(
+        "DROP INDEX IF EXISTS idx_title;",
+        "CREATE UNIQUE INDEX IF NOT EXISTS idx_title ON posts (title);"
+    ), SchemaDiff(from, to).statements())
+  }
+
+  @Test
+  fun migratedIndexIsCreated() {
+    val from = database(1, table("posts", "`title` TEXT "))
+    val to = database(2, table("posts", "`title` TEXT ").apply {
+      migrations = listOf(TableMigration().apply {
+        versionChange = VersionChange().apply {
+          fromVersion = 1
+          toVersion = 2
+        }
+        field = "title"
+        action = MigrationOptions.CREATE_INDEX
+      })
+    })
+    assertEquals(listOf("CREATE INDEX IF NOT EXISTS idx_title ON posts (title);"),
+        SchemaDiff(from, to).statements())
+  }
+
+  @Test
+  fun snapshotWithoutSchemaHasNoStatements() {
+    val from = database(1, TableMetaData().apply { tableName = "posts" })
+    val to = database(2, table("posts", "`title` TEXT "))
+    assertNull(SchemaDiff(from, to).statements())
+  }
+
+  private fun database(version: Int, vararg tables: TableMetaData): DatabaseMetaData = DatabaseMetaData().apply {
+    dbVersion = version
+    tableMetaData = tables.toList()
+  }
+
+  private fun table(name: String, vararg columns: String): TableMetaData = TableMetaData().apply {
+    tableName = name
+    this.columns = columns.toList()
+    createStatements = listOf("CREATE TABLE IF NOT EXISTS $name(`id` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        columns.joinToString("") { "$it, " } + "`CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );")
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class StatementBinderGeneratorTest {
+
+  private val authors = ProcessorTestSources.source("test.AuthorsTable")
+
+  private val books = ProcessorTestSources.source("test.BooksTable")
+
+  @Test
+  fun tableImplementsStatementBinder() {
+    assertTrue(authors.contains("public class AuthorsTable extends FastTable<Author> implements StatementBinder<Author>"))
+  }
+
+  @Test
+  fun boundColumnsFollowBindingOrder() {
+    assertTrue(books.contains(
+        "return new String[]{titleColumn.getName(), priceColumn.getName(), authorColumn.getName()};"))
+    assertTrue(books.contains("statement.bindString(1, titleValue);"))
+    assertTrue(books.contains("statement.bindDouble(2, t.getPrice());"))
+    assertTrue(books.contains("statement.bindLong(3, author != null ? author.getId() : 0);"))
+  }
+
+  @Test
+  fun nullableValuesAreBoundAsNull() {
+    assertTrue(authors.contains("if (nameValue == null) statement.bindNull(1);"))
+    assertTrue(authors.contains("if (verifiedValue == null) statement.bindNull(3);"))
+    assertTrue(authors.contains("else statement.bindLong(3, verifiedValue ? 1 : 0);"))
+  }
+
+  @Test
+  fun booleanGetterIsSharedWithSerializer() {
+    assertTrue(authors.contains("statement.bindLong(2, t.isActive() ? 1 : 0);"))
+    assertTrue(authors.contains("values.put(activeColumn.getName(), t.isActive() ? 1 : 0);"))
+    assertTrue(authors.contains("Boolean verifiedValue = t.getVerified();"))
+  }
+
+  @Test
+  fun boxedBooleanKeepsItsNulls() {
+    assertTrue(authors.contains(
+        "values.put(verifiedColumn.getName(), verifiedValue == null ? null : verifiedValue ? 1 : 0);"))
+    assertTrue(authors.contains("author.setVerified(e.isNull(indexes[2]) ? null : e.getInt(indexes[2]) == 1);"))
+    assertTrue(authors.contains("author.setActive(e.getInt(indexes[1]) == 1);"))
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.database.ompiler
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TableCreateStatementsTest {
+
+  @Test
+  fun createTableListsColumnsBetweenIdAndTimestamps() {
+    val statements = createStatements("test.AuthorsTable")
+    assertEquals("CREATE TABLE IF NOT EXISTS authors(`id` INTEGER PRIMARY KEY AUTOINCREMENT, `name` TEXT , " +
+        "`active` INTEGER , `verified` INTEGER , `CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );", statements[0])
+  }
+
+  @Test
+  fun columnConstraintsAndRelationsAreDeclared() {
+    val statements = createStatements("test.BooksTable")
+    assertTrue(statements[0].startsWith("CREATE TABLE IF NOT EXISTS books(`id` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        "`title` VARCHAR (40) NOT NULL UNIQUE, `price` "))
+    assertTrue(statements[0].endsWith("`authorId` INTEGER , `CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );"))
+  }
+
+  @Test
+  fun indexesFollowTheTable() {
+    assertEquals(listOf("CREATE INDEX IF NOT EXISTS idx_name ON authors (name);"),
+        createStatements("test.AuthorsTable").drop(1))
+    assertEquals(listOf("CREATE UNIQUE INDEX IF NOT EXISTS idx_title_price ON books (title, price);"),
+        createStatements("test.BooksTable").drop(1))
+  }
+
+  /**
+   * the statements the table's METADATA field is generated with
+   */
+  private fun createStatements(className: String): List<String> {
+    val source = ProcessorTestSources.source(className)
+    val metadata = source.substring(source.indexOf("TableMetadata METADATA"))
+    val statements = metadata.substring(metadata.lastIndexOf("new String[]{", metadata.indexOf("});")), metadata.indexOf("});"))
+    return Regex(""""((?:[^"\\]|\\.)*)"""").findAll(statements).map { it.groupValues[1] }.toList()
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.app.Application
+import android.content.ContentValues
+import android.database.Cursor
+import android.database.SQLException
+import androidx.sqlite.db.SupportSQLiteStatement
+import androidx.test.InstrumentationRegistry
+import androidx.test.runner.AndroidJUnit4
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import promise.commons.AndroidPromise
+import promise.commons.model.Identifiable
+import promise.commons.model.List
+import promise.model.IdentifiableList
+
+@RunWith(AndroidJUnit4::class)
+class SaveListVisitorTest {
+
+  private lateinit var database: FastDatabase
+
+  private lateinit var items: ItemsTable
+
+  @Before
+  fun setUp() {
+    AndroidPromise.init(InstrumentationRegistry.getTargetContext().applicationContext as Application, true)
+    database = FastDatabase.createDatabase(DatabaseDefinition(1, arrayOf(
+        TableDefinition(ItemsTable::class.java, ItemsTable.METADATA, TableFactory { ItemsTable(it) }))), null, false)
+    items = database.obtain(ItemsTable::class.java)
+  }
+
+  @After
+  fun tearDown() {
+    database.close()
+  }
+
+  @Test
+  fun listIsSavedInOneTransactionPerChunk() {
+    val list = IdentifiableList((1..25).map { Item("item $it") })
+    assertTrue(items.save(list, 10))
+    val stats = database.lastBulkSaveStats!!
+    assertEquals(25, stats.rows)
+    assertEquals(3, stats.transactions)
+    assertTrue(list.all { it.getId() > 0 })
+    assertEquals(25, items.findAll().size)
+  }
+
+  @Test
+  fun listWithoutChunkSizeIsSavedInOneTransaction() {
+    assertTrue(items.save(IdentifiableList((1..25).map { Item("item $it") })))
+    assertEquals(1, database.lastBulkSaveStats!!.transactions)
+  }
+
+  @Test
+  fun savedRowsAreUpdatedInPlace() {
+    val list = IdentifiableList((1..3).map { Item("item $it") })
+    assertTrue(items.save(list))
+    list.forEach { it.name = it.name + " renamed" }
+    assertTrue(items.save(list))
+    val saved = items.findAll().associateBy { it.getId() }
+    assertEquals(3, saved.size)
+    list.forEach { assertEquals(it.name, saved.getValue(it.getId()).name) }
+  }
+
+  @Test
+  fun rowThatCanNotBeSavedRollsBackItsChunk() {
+    val list = IdentifiableList((1..25).map { Item(if (it == 15) null else "item $it") })
+    try {
+      items.save(list, 10)
+      fail("a row without a name was saved")
+    } catch (e: SQLException) {
+    }
+    assertEquals(10, items.findAll().size)
+    assertTrue(list.take(10).all { it.getId() > 0 })
+    assertTrue(list.drop(10).all { it.getId() == 0 })
+  }
+
+  class Item(var name: String? = null) : Identifiable<Int> {
+    private var id = 0
+
+    override fun getId(): Int = id
+
+    override fun setId(id: Int) {
+      this.id = id
+    }
+  }
+
+  class ItemsTable(database: FastDatabase) : FastTable<Item>(database), StatementBinder<Item> {
+
+    override val columns: List<out Column<*>> = List.fromArray(nameColumn)
+
+    override val boundColumnNames: Array<String> = arrayOf(nameColumn.name)
+
+    override fun createEntityInstance(): Item = Item()
+
+    override fun serialize(t: Item): ContentValues = ContentValues().apply { put(nameColumn.name, t.name) }
+
+    override fun bind(statement: SupportSQLiteStatement, t: Item) {
+      val name = t.name
+      if (name == null) statement.bindNull(1) else statement.bindString(1, name)
+    }
+
+    override fun deserialize(e: Cursor): Item = Item(e.getString(nameColumn.getIndex(e)))
+
+    companion object {
+      val nameColumn: Column<String> = Column("name", Column.Type.TEXT.NOT_NULL(), 1)
+
+      val METADATA = TableMetadata("items", createStatements = arrayOf(
+          "CREATE TABLE IF NOT EXISTS items(`id` INTEGER PRIMARY KEY AUTOINCREMENT, `name` TEXT , " +
+              "`CREATED_AT` INTEGER , `UPDATED_AT` INTEGER );"))
+    }
+  }
+}
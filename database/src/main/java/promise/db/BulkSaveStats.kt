@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+/**
+ * throughput report of a single bulk save, see [FastDatabase.lastBulkSaveStats]
+ *
+ * @param tableName the table the rows were written to
+ * @param rows number of rows written
+ * @param transactions number of transactions the rows were split into
+ * @param elapsedMillis wall time spent writing the rows
+ */
+data class BulkSaveStats(
+    val tableName: String,
+    val rows: Int,
+    val transactions: Int,
+    val elapsedMillis: Long) {
+
+  /**
+   * @return rows written per second
+   */
+  val rowsPerSecond: Double
+    get() = rows * 1000.0 / maxOf(elapsedMillis, 1)
+
+  override fun toString(): String =
+      "$tableName: $rows rows in $transactions transaction(s), ${elapsedMillis}ms (${rowsPerSecond.toLong()} rows/s)"
+}
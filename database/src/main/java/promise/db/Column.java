@@ -17,6 +17,8 @@ import android.database.Cursor;
 
 import java.util.Comparator;
 
+import promise.db.criteria.Criteria;
+
 public final class Column<T> {
   public static final String ASCENDING = "ASC", DESCENDING = "DESC";
   static Comparator<Column> ascending =
@@ -90,6 +92,26 @@ public final class Column<T> {
     this.operand = op.s;
   }
 
+  /**
+   * @return criteria matching this column's operand and value, with the value as a bind argument
+   */
+  Criteria toCriteria() {
+    switch (operand.trim()) {
+      case "!=":
+        return Criteria.notEquals(this, value);
+      case "<":
+        return Criteria.lesserThan(this, value);
+      case ">":
+        return Criteria.greaterThan(this, value);
+      case "<=":
+        return Criteria.lesserThanOrEqual(this, value);
+      case ">=":
+        return Criteria.greaterThanOrEqual(this, value);
+      default:
+        return Criteria.equals(this, value);
+    }
+  }
+
   public String getOperand() {
     return operand;
   }
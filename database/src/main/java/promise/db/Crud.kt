@@ -28,6 +28,8 @@ interface Crud<X> {
 
   fun <T : Identifiable<Int>> findAll(tableCrud: TableCrud<T, in X>, vararg columns: Column<*>): IdentifiableList<out T>
 
+  fun <T : Identifiable<Int>> findAll(tableCrud: TableCrud<T, in X>, queryBuilder: QueryBuilder): IdentifiableList<out T>
+
   fun delete(tableCrud: TableCrud<*, in X>, column: Column<*>): Boolean
 
   fun <T : Identifiable<Int>> delete(tableCrud: TableCrud<T, in X>, t: T): Boolean
@@ -36,10 +38,14 @@ interface Crud<X> {
 
   fun <T> delete(tableCrud: TableCrud<*, in X>, column: Column<T>, list: List<out T>): Boolean
 
+  fun <T> deleteIn(tableCrud: TableCrud<*, in X>, column: Column<T>, list: List<out T>): Int
+
   fun <T : Identifiable<Int>> save(t: T, tableCrud: TableCrud<T, in X>): Long
 
   fun <T : Identifiable<Int>> save(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in X>): Boolean
 
+  fun <T : Identifiable<Int>> save(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in X>, chunkSize: Int): Boolean
+
   fun deleteAll(): Boolean
 
   fun getLastId(tableCrud: TableCrud<*, in X>): Int
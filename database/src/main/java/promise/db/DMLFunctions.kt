@@ -14,6 +14,7 @@
 package promise.db
 
 import android.database.Cursor
+import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 import promise.commons.model.Identifiable
@@ -34,6 +35,10 @@ interface DMLFunctions<T : Identifiable<Int>> {
 
   fun saveAsync(list: IdentifiableList<out T>): Single<Boolean>
 
+  fun save(list: IdentifiableList<out T>, chunkSize: Int): Boolean
+
+  fun saveAsync(list: IdentifiableList<out T>, chunkSize: Int): Single<Boolean>
+
   fun update(t: T): Boolean
 
   fun updateAsync(t: T): Maybe<Boolean>
@@ -44,8 +49,12 @@ interface DMLFunctions<T : Identifiable<Int>> {
 
   fun query(queryBuilder: QueryBuilder): Cursor
 
+  fun stream(queryBuilder: QueryBuilder): EntityStream<out T>
+
   fun queryAsync(queryBuilder: QueryBuilder): Single<Cursor>
 
+  fun observe(queryBuilder: QueryBuilder): Flowable<IdentifiableList<out T>>
+
   fun find(): TableCrud.Extras<T>
 
   fun findById(idLong: Long): T?
@@ -63,6 +72,10 @@ interface DMLFunctions<T : Identifiable<Int>> {
 
   fun findAllAsync(vararg column: Column<*>): Maybe<IdentifiableList<out T>>
 
+  fun findAll(queryBuilder: QueryBuilder): IdentifiableList<out T>
+
+  fun <N> findAllIn(column: Column<N>, list: List<out N>): IdentifiableList<out T>
+
   fun delete(column: Column<*>): Boolean
 
   fun deleteAsync(column: Column<*>): Maybe<Boolean>
@@ -75,6 +88,10 @@ interface DMLFunctions<T : Identifiable<Int>> {
 
   fun <C> deleteAsync(column: Column<C>, list: List<out C>): Maybe<Boolean>
 
+  fun <N> deleteIn(column: Column<N>, list: List<out N>): Int
+
+  fun <C> deleteInAsync(column: Column<C>, list: List<out C>): Single<Int>
+
   fun clear(): Boolean
 
   fun clearAsync(): Maybe<Boolean>
@@ -13,13 +13,24 @@
 
 package promise.db
 
+import android.content.ContentValues
+import android.database.SQLException
 import android.database.sqlite.SQLiteDatabase
 import android.text.TextUtils
 import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteStatement
+import promise.commons.data.log.LogUtil
 import promise.commons.model.Identifiable
 import promise.commons.model.List
+import promise.db.criteria.Criteria
 import promise.model.IdentifiableList
 import promise.utils.Visitor
+import java.io.Closeable
+
+/**
+ * the lowest default limit on bind arguments per statement across sqlite versions
+ */
+internal const val SQLITE_MAX_VARIABLE_NUMBER = 999
 
 internal class UpdateVisitor<T : Identifiable<Int>>(private val x: SupportSQLiteDatabase,
                                            private val instance: T,
@@ -27,12 +38,12 @@ internal class UpdateVisitor<T : Identifiable<Int>>(private val x: SupportSQLite
 
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): Boolean {
     fun update(instance: T, x: SupportSQLiteDatabase, column: Column<*>): Boolean {
-      val whereArg: String = if (column.operand != null && column.value() != null)
-        column.name + column.operand + column.value()
+      val where: Criteria = if (column.operand != null && column.value() != null)
+        column.toCriteria()
       else throw TableError("Cant update the record, missing updating information")
       val values = t.serialize(instance)
       values.put(FastTable.updatedAt.name, System.currentTimeMillis())
-      return x.update(t.name, SQLiteDatabase.CONFLICT_ROLLBACK, values, whereArg, null) > 0
+      return x.update(t.name, SQLiteDatabase.CONFLICT_ROLLBACK, values, where.build(), where.buildArguments()) > 0
     }
     return if (column == null) {
       try {
@@ -48,8 +59,8 @@ internal class DeleteVisitor<T : Identifiable<Int>>(private val x: SupportSQLite
                                            private val instance: T) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, Boolean> {
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): Boolean {
     fun onDelete(x: SupportSQLiteDatabase, column: Column<*>): Boolean {
-      val where = column.name + column.operand + column.value()
-      return x.delete(t.name, where, null) >= 0
+      val where = column.toCriteria()
+      return x.delete(t.name, where.build(), where.buildArguments()) >= 0
     }
     return onDelete(x, FastTable.id.with(instance.getId()))
   }
@@ -62,44 +73,79 @@ internal class DeleteErasureVisitor(private val x: SupportSQLiteDatabase,
         !TextUtils.isEmpty(t.name) && x.delete(t.name, null, null) >= 0
 
     fun onDelete(x: SupportSQLiteDatabase, column: Column<*>): Boolean {
-      val where = column.name + column.operand + column.value()
-      return x.delete(t.name, where, null) >= 0
+      val where = column.toCriteria()
+      return x.delete(t.name, where.build(), where.buildArguments()) >= 0
     }
     return if (column != null) onDelete(x, column)
     else onDelete(x)
   }
 }
 
+/**
+ * deletes the rows whose column value is in the list
+ * the list is split into IN (?, ...) chunks of at most [SQLITE_MAX_VARIABLE_NUMBER] values
+ * and all chunks are deleted in one transaction
+ *
+ * @return number of deleted rows
+ */
 internal class DeleteListErasureVisitor<C>(private val x: SupportSQLiteDatabase,
                                   private val column: Column<C>,
-                                  private val list: List<out C>) : Visitor<TableCrud<*, in SupportSQLiteDatabase>, Boolean> {
-  override fun visit(t: TableCrud<*, in SupportSQLiteDatabase>): Boolean {
-    fun <C> onDelete(x: SupportSQLiteDatabase, column: Column<C>, list: List<out C>): Boolean {
-      val deleted: Boolean
-      var where = ""
-      var i = 0
-      val listSize = list.size
-      while (i < listSize) {
-        val c = list[i]
-        where = if (i == listSize - 1) {
-          column.name + " " + column.operand + " " + c
-        } else column.name + " " + column.operand + " " + c + " OR "
-        i++
+                                  private val list: List<out C>) : Visitor<TableCrud<*, in SupportSQLiteDatabase>, Int> {
+  override fun visit(t: TableCrud<*, in SupportSQLiteDatabase>): Int {
+    if (list.isEmpty()) return 0
+    var deleted = 0
+    x.beginTransaction()
+    try {
+      var from = 0
+      while (from < list.size) {
+        val to = minOf(from + SQLITE_MAX_VARIABLE_NUMBER, list.size)
+        val where = Criteria.`in`(column, Array<Any?>(to - from) { list[from + it] })
+        deleted += x.delete(t.name, where.build(), where.buildArguments())
+        from = to
       }
-      deleted = x.delete(t.name, where, null) >= 0
-      return deleted
+      x.setTransactionSuccessful()
+    } finally {
+      x.endTransaction()
     }
-    return onDelete(x, column, list)
+    return deleted
   }
 }
 
+/**
+ * how [SaveVisitor] and [SaveListVisitor] write rows that already have an id
+ */
+internal enum class SaveMode {
+  /**
+   * update the row by id and insert it if the update did not change anything
+   */
+  UPDATE_OR_INSERT,
+  /**
+   * a single INSERT ... ON CONFLICT(id) DO UPDATE, needs sqlite 3.24 and above
+   */
+  UPSERT
+}
+
+/**
+ * saves a single instance, tables that are a [StatementBinder] and saves in [SaveMode.UPSERT]
+ * reuse the statement compiled for the table in [statements]
+ */
 internal class SaveVisitor<T : Identifiable<Int>>(
     private val updateVisitor: Visitor<TableCrud<T, in SupportSQLiteDatabase>, Boolean>,
     private val x: SupportSQLiteDatabase,
-    private val instance: T
+    private val instance: T,
+    private val statements: SaveStatementCache,
+    private val mode: SaveMode = SaveMode.UPDATE_OR_INSERT
 ) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, Long> {
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): Long {
     fun onSave(instance: T, x: SupportSQLiteDatabase): Long {
+      if (t is StatementBinder<*>) {
+        val binder = t as StatementBinder<T>
+        return statements.get(x, t.name, binder.boundColumnNames, mode).execute(binder, instance, instance.getId())
+      }
+      if (mode != SaveMode.UPDATE_OR_INSERT) {
+        val values = t.serialize(instance)
+        return statements.get(x, t.name, values.keySet().toTypedArray(), mode).execute(values, instance.getId())
+      }
       if (instance.getId() != 0 && updateVisitor.visit(t)) return instance.getId().toLong()
       val values = t.serialize(instance)
       values.put(FastTable.createdAt.name, System.currentTimeMillis())
@@ -110,20 +156,246 @@ internal class SaveVisitor<T : Identifiable<Int>>(
   }
 }
 
+/**
+ * saves a list of instances in as few transactions as possible
+ * new instances are given the id of their inserted row
+ * rows are written through the statement compiled for the table in [statements], rebound per row
+ * a row that can not be saved rolls back its chunk and fails the save, chunks committed before it are kept
+ *
+ * @param chunkSize number of rows per transaction, zero or less writes the whole list in one transaction
+ */
 internal class SaveListVisitor<T : Identifiable<Int>>(
     private val x: SupportSQLiteDatabase,
-    private val list: IdentifiableList<out T>
+    private val list: IdentifiableList<out T>,
+    private val statements: SaveStatementCache,
+    private val chunkSize: Int = 0,
+    private val mode: SaveMode = SaveMode.UPDATE_OR_INSERT
 ) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, Boolean> {
+
+  /**
+   * throughput of the last visit
+   */
+  var stats: BulkSaveStats? = null
+    private set
+
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): Boolean {
-    var saved = true
-    var i = 0
     val listSize = list.size
-    while (i < listSize) {
-      val instance = list[i]
-      val visitor = SaveVisitor<T>(UpdateVisitor(x, instance, null), x, instance)
-      saved = saved && visitor.visit(t) > 0
-      i++
+    if (listSize == 0) return true
+    val step = if (chunkSize <= 0) listSize else chunkSize
+    val start = System.currentTimeMillis()
+    val binder = t as? StatementBinder<T>
+    var statement: SaveStatement? =
+        if (binder != null) statements.get(x, t.name, binder.boundColumnNames, mode) else null
+    var transactions = 0
+    var from = 0
+    while (from < listSize) {
+      val to = minOf(from + step, listSize)
+      /*
+       * ids given to new instances of a chunk that is rolled back are taken back
+       */
+      val inserted = ArrayList<T>()
+      x.beginTransaction()
+      try {
+        for (i in from until to) {
+          val instance = list[i]
+          val rowId = when {
+            binder != null -> statement!!.execute(binder, instance, instance.getId())
+            else -> {
+              val values = t.serialize(instance)
+              if (statement == null) statement = statements.get(x, t.name, values.keySet().toTypedArray(), mode)
+              statement.execute(values, instance.getId())
+            }
+          }
+          if (rowId <= 0) throw SQLException("could not save row $i of the list into ${t.name}")
+          if (instance.getId() == 0) {
+            instance.setId(rowId.toInt())
+            inserted.add(instance)
+          }
+        }
+        x.setTransactionSuccessful()
+      } catch (e: Throwable) {
+        inserted.forEach { it.setId(0) }
+        throw e
+      } finally {
+        x.endTransaction()
+      }
+      transactions++
+      from = to
+    }
+    stats = BulkSaveStats(t.name, listSize, transactions, System.currentTimeMillis() - start)
+    return true
+  }
+}
+
+/**
+ * a save compiled once for a fixed list of columns and rebound for every row,
+ * the timestamp columns and, for the upsert modes, the id are bound by the statement itself
+ * in [SaveMode.UPDATE_OR_INSERT] rows that already have an id go through a compiled UPDATE first
+ * and are only inserted if it changed nothing
+ * serialized rows whose values do not match the compiled columns are saved through a statement compiled for their columns
+ */
+internal class SaveStatement(internal val x: SupportSQLiteDatabase,
+                             private val tableName: String,
+                             internal val columns: Array<String>,
+                             private val mode: SaveMode) : Closeable {
+
+  private val statement: SupportSQLiteStatement = x.compileStatement(sql())
+
+  private var updateStatement: SupportSQLiteStatement? = null
+
+  private fun sql(): String {
+    val id = FastTable.id.name
+    val createdAt = FastTable.createdAt.name
+    val updatedAt = FastTable.updatedAt.name
+    val names = columns.joinToString(", ")
+    val params = columns.joinToString(", ") { "?" }
+    return when (mode) {
+      SaveMode.UPDATE_OR_INSERT ->
+        "INSERT INTO `$tableName` ($names, $createdAt, $updatedAt) VALUES ($params, ?, ?)"
+      SaveMode.UPSERT ->
+        "INSERT INTO `$tableName` ($names, $createdAt, $updatedAt, $id) VALUES ($params, ?, ?, ?) " +
+            "ON CONFLICT($id) DO UPDATE SET " +
+            columns.joinToString("") { "$it = excluded.$it, " } + "$updatedAt = excluded.$updatedAt"
+    }
+  }
+
+  private fun updateSql(): String =
+      "UPDATE `$tableName` SET " + columns.joinToString("") { "$it = ?, " } +
+          "${FastTable.updatedAt.name} = ? WHERE ${FastTable.id.name} = ?"
+
+  /**
+   * @param values the serialized row without id and timestamps
+   * @param id the id of the row, zero for new rows
+   * @return the id of the row or -1 if the row could not be saved
+   */
+  fun execute(values: ContentValues, id: Int): Long {
+    if (values.size() != columns.size || !columns.all { values.containsKey(it) })
+      return SaveStatement(x, tableName, values.keySet().toTypedArray(), mode).use { it.execute(values, id) }
+    val now = System.currentTimeMillis()
+    if (mode == SaveMode.UPDATE_OR_INSERT && id != 0) {
+      val update = updateStatement()
+      columns.forEachIndexed { i, column -> update.bindValue(i + 1, values.get(column)) }
+      val updated = update(update, id, now) ?: return -1
+      if (updated) return id.toLong()
+    }
+    statement.clearBindings()
+    columns.forEachIndexed { i, column -> statement.bindValue(i + 1, values.get(column)) }
+    return insert(id, now)
+  }
+
+  /**
+   * @param binder binds the columns of the row in the order of the compiled columns
+   * @param t the row
+   * @param id the id of the row, zero for new rows
+   * @return the id of the row or -1 if the row could not be saved
+   */
+  fun <T> execute(binder: StatementBinder<T>, t: T, id: Int): Long {
+    val now = System.currentTimeMillis()
+    if (mode == SaveMode.UPDATE_OR_INSERT && id != 0) {
+      val update = updateStatement()
+      binder.bind(update, t)
+      val updated = update(update, id, now) ?: return -1
+      if (updated) return id.toLong()
+    }
+    statement.clearBindings()
+    binder.bind(statement, t)
+    return insert(id, now)
+  }
+
+  private fun updateStatement(): SupportSQLiteStatement {
+    val update = updateStatement ?: x.compileStatement(updateSql()).also { updateStatement = it }
+    update.clearBindings()
+    return update
+  }
+
+  /**
+   * runs the update whose columns are bound
+   *
+   * @return true if the row was updated, false if there is no row with the id, null on error
+   */
+  private fun update(update: SupportSQLiteStatement, id: Int, now: Long): Boolean? {
+    update.bindLong(columns.size + 1, now)
+    update.bindLong(columns.size + 2, id.toLong())
+    return try {
+      update.executeUpdateDelete() > 0
+    } catch (e: SQLException) {
+      LogUtil.e(TAG, e)
+      null
     }
-    /*if (close) database.close();*/return saved
   }
-}
\ No newline at end of file
+
+  private fun insert(id: Int, now: Long): Long {
+    val rowId: Any? = if (id != 0) id else null
+    var index = columns.size
+    when (mode) {
+      SaveMode.UPDATE_OR_INSERT -> {
+        statement.bindLong(++index, now)
+        statement.bindLong(++index, now)
+      }
+      SaveMode.UPSERT -> {
+        statement.bindLong(++index, now)
+        statement.bindLong(++index, now)
+        statement.bindValue(++index, rowId)
+      }
+    }
+    return try {
+      val inserted = statement.executeInsert()
+      if (mode != SaveMode.UPDATE_OR_INSERT && id != 0 && inserted != -1L) id.toLong() else inserted
+    } catch (e: SQLException) {
+      LogUtil.e(TAG, e)
+      -1
+    }
+  }
+
+  override fun close() {
+    statement.close()
+    updateStatement?.close()
+  }
+
+  companion object {
+    private val TAG: String = LogUtil.makeTag(SaveStatement::class.java)
+  }
+}
+
+/**
+ * the save statements compiled for each table and mode, kept open between saves
+ * saves run under the writer lock of [TransactionManager] so a statement is never bound by two threads at once
+ * a statement is compiled again when the columns of the saved row or the connection change
+ */
+internal class SaveStatementCache : Closeable {
+
+  private val statements: MutableMap<String, SaveStatement> = HashMap()
+
+  @Synchronized
+  fun get(x: SupportSQLiteDatabase, tableName: String, columns: Array<String>, mode: SaveMode): SaveStatement {
+    val key = "$tableName:$mode"
+    val cached = statements[key]
+    if (cached != null && cached.x === x && cached.columns.contentEquals(columns)) return cached
+    cached?.close()
+    return SaveStatement(x, tableName, columns, mode).also { statements[key] = it }
+  }
+
+  /**
+   * closes every statement, the next save compiles them again
+   */
+  @Synchronized
+  override fun close() {
+    statements.values.forEach { it.close() }
+    statements.clear()
+  }
+}
+
+/**
+ * binds the value to the one based index according to its type
+ */
+internal fun SupportSQLiteStatement.bindValue(index: Int, value: Any?) {
+  when (value) {
+    null -> bindNull(index)
+    is ByteArray -> bindBlob(index, value)
+    is Float -> bindDouble(index, value.toDouble())
+    is Double -> bindDouble(index, value)
+    is Number -> bindLong(index, value.toLong())
+    is Boolean -> bindLong(index, if (value) 1 else 0)
+    else -> bindString(index, value.toString())
+  }
+}
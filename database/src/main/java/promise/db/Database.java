@@ -18,10 +18,29 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import promise.database.PragmaPreset;
+
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Database {
   int version() default 1;
 
   Class<? extends FastTable<?>>[] tables() default {};
+
+  /**
+   * opens the database in write ahead logging mode,
+   * reads on other threads then run on their own connections and are not blocked by a write
+   */
+  boolean writeAheadLogging() default false;
+
+  /**
+   * number of wal pages after which a commit checkpoints the log,
+   * zero disables automatic checkpoints and a negative value keeps the sqlite default
+   */
+  int walAutoCheckpoint() default -1;
+
+  /**
+   * the pragmas applied each time the database is opened, see PragmaProfile
+   */
+  PragmaPreset pragmaProfile() default PragmaPreset.NONE;
 }
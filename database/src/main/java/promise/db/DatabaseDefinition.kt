@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import promise.database.Table
+
+/**
+ * name and indices of a table, the values of its @Table annotation
+ *
+ * @param indices columns indexed on their own
+ * @param createStatements the CREATE TABLE and CREATE INDEX statements of the table, generated at compile time,
+ * when empty they are built from the columns of the table when it is created
+ */
+class TableMetadata @JvmOverloads constructor(
+    val tableName: String,
+    val indices: Array<String> = emptyArray(),
+    val compoundIndexes: Array<CompoundIndex> = emptyArray(),
+    val createStatements: Array<String> = emptyArray()) {
+
+  class CompoundIndex(val unique: Boolean, val columns: Array<String>)
+
+  companion object {
+    internal fun of(table: Table): TableMetadata = TableMetadata(
+        table.tableName,
+        table.indices.map { it.columnName }.toTypedArray(),
+        table.compoundIndexes.map { index ->
+          CompoundIndex(index.unique, index.indexes.map { it.columnName }.toTypedArray())
+        }.toTypedArray())
+  }
+}
+
+/**
+ * creates a table without reflection
+ */
+fun interface TableFactory<T : FastTable<*>> {
+  fun create(database: FastDatabase): T
+}
+
+class TableDefinition<T : FastTable<*>>(
+    val tableClass: Class<T>,
+    val metadata: TableMetadata,
+    val factory: TableFactory<T>)
+
+/**
+ * the statements that upgrade the schema from one version to another,
+ * generated from the difference of the schema snapshots of the two versions
+ */
+class SchemaMigration(
+    val fromVersion: Int,
+    val toVersion: Int,
+    val statements: Array<String>)
+
+/**
+ * everything needed to open a database and create its tables without reading annotations at runtime,
+ * generated for classes annotated with DatabaseEntity
+ *
+ * @param migrations schema migrations between the versions that have snapshots
+ * @param pragmaProfile pragmas applied when the database is opened
+ */
+class DatabaseDefinition @JvmOverloads constructor(
+    val version: Int,
+    val tables: Array<TableDefinition<*>>,
+    val writeAheadLogging: Boolean = false,
+    val walAutoCheckpoint: Int = -1,
+    val migrations: Array<SchemaMigration> = emptyArray(),
+    val pragmaProfile: PragmaProfile? = null)
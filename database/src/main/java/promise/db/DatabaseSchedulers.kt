@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.content.res.Resources
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * the threads the reactive calls of [ReactiveFastDatabase] run on,
+ * writes run one at a time on a single writer thread and reads on a bounded pool of reader threads
+ * work subscribed on a scheduler with subscribeOn is queued by [Priority], queued work of a higher priority
+ * runs before queued work of a lower one and work of the same priority runs in order
+ * work scheduled through a worker of the scheduler, such as observeOn and delays, runs in the order it was
+ * scheduled on that worker whatever its priority
+ *
+ * @param readers number of reader threads
+ */
+class DatabaseSchedulers internal constructor(readers: Int) {
+
+  enum class Priority {
+    /**
+     * reads the user is waiting for
+     */
+    HIGH,
+    NORMAL,
+    /**
+     * bulk background work such as syncs and seeding
+     */
+    LOW
+  }
+
+  /**
+   * the queue and timings of one group of threads
+   */
+  class Lane internal constructor(name: String, threads: Int) {
+
+    private val sequence = AtomicLong()
+    private val executed = AtomicInteger()
+    private val totalWait = AtomicLong()
+    private val maxWait = AtomicLong()
+
+    private val executor = ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        PriorityBlockingQueue<Runnable>(), Factory(name), ThreadPoolExecutor.AbortPolicy()).apply { prestartAllCoreThreads() }
+
+    /**
+     * rx swallows a rejected task and its subscriber never hears back, so work handed to a lane
+     * that was shut down runs on the calling thread with the database closed to it
+     * and the call it was subscribed for fails with a [RejectedExecutionException]
+     */
+    private val schedulers = Priority.values().map { priority ->
+      Schedulers.from { runnable ->
+        try {
+          executor.execute(Task(priority, sequence.incrementAndGet(), runnable))
+        } catch (e: RejectedExecutionException) {
+          rejected.set(true)
+          try {
+            runnable.run()
+          } finally {
+            rejected.remove()
+          }
+        }
+      }
+    }
+
+    fun scheduler(priority: Priority): Scheduler = schedulers[priority.ordinal]
+
+    /**
+     * number of tasks waiting for a thread
+     */
+    val queueDepth: Int
+      get() = executor.queue.size
+
+    /**
+     * number of tasks run
+     */
+    val executedCount: Int
+      get() = executed.get()
+
+    /**
+     * time tasks spent in the queue before running
+     */
+    val totalWaitMillis: Long
+      get() = totalWait.get()
+
+    val maxWaitMillis: Long
+      get() = maxWait.get()
+
+    /**
+     * runs the tasks already queued, tasks that come later such as a delayed flush of the write queue fail
+     */
+    internal fun shutdown() {
+      executor.shutdown()
+    }
+
+    override fun toString(): String =
+        "Lane(queued=$queueDepth, executed=$executedCount, totalWait=${totalWaitMillis}ms, maxWait=${maxWaitMillis}ms)"
+
+    private inner class Task(private val priority: Priority,
+                             private val sequence: Long,
+                             private val runnable: Runnable) : Runnable, Comparable<Task> {
+      private val queuedAt = System.currentTimeMillis()
+
+      override fun run() {
+        val wait = System.currentTimeMillis() - queuedAt
+        totalWait.addAndGet(wait)
+        var max = maxWait.get()
+        while (wait > max && !maxWait.compareAndSet(max, wait)) max = maxWait.get()
+        executed.incrementAndGet()
+        runnable.run()
+      }
+
+      override fun compareTo(other: Task): Int =
+          if (priority != other.priority) priority.compareTo(other.priority) else sequence.compareTo(other.sequence)
+    }
+  }
+
+  /**
+   * single thread all writes run on
+   */
+  val writer: Lane = Lane("promise-db-writer", 1)
+
+  /**
+   * threads reads run on
+   */
+  val reader: Lane = Lane("promise-db-reader", readers)
+
+  fun writer(priority: Priority = Priority.NORMAL): Scheduler = writer.scheduler(priority)
+
+  fun reader(priority: Priority = Priority.NORMAL): Scheduler = reader.scheduler(priority)
+
+  /**
+   * stops both lanes once their queued work has run, work handed to them later fails,
+   * see [ReactiveFastDatabase.close]
+   */
+  internal fun shutdown() {
+    writer.shutdown()
+    reader.shutdown()
+  }
+
+  override fun toString(): String = "DatabaseSchedulers(writer=$writer, reader=$reader)"
+
+  private class Factory(private val name: String) : java.util.concurrent.ThreadFactory {
+    private val count = AtomicInteger()
+
+    override fun newThread(runnable: Runnable): Thread =
+        Thread(runnable, name + "-" + count.incrementAndGet()).apply { isDaemon = true }
+  }
+
+  companion object {
+    /**
+     * set while work handed to a lane that was shut down runs on the calling thread
+     */
+    private val rejected = ThreadLocal<Boolean>()
+
+    /**
+     * fails the work a lane that was shut down handed back to the calling thread before it opens the database
+     */
+    internal fun checkAccepted() {
+      if (rejected.get() == true) throw RejectedExecutionException("the database schedulers were shut down when the database was closed")
+    }
+
+    /**
+     * default of the framework's pool of wal connections when the device does not declare it
+     */
+    private const val DEFAULT_WAL_POOL_SIZE = 4
+
+    /**
+     * number of connections the framework opens for reads in wal mode, the pool it declares less the primary connection
+     * the framework never uses a pool of less than two connections
+     */
+    internal fun walReaders(): Int {
+      val resources = Resources.getSystem()
+      val id = resources.getIdentifier("db_connection_pool_size", "integer", "android")
+      val poolSize = if (id != 0) try {
+        resources.getInteger(id)
+      } catch (e: Resources.NotFoundException) {
+        DEFAULT_WAL_POOL_SIZE
+      } else DEFAULT_WAL_POOL_SIZE
+      return maxOf(poolSize, 2) - 1
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.util.LruCache
+import promise.commons.model.Identifiable
+
+/**
+ * identity map of a table, keeps the most recently read rows by id and evicts the least recently used
+ * see [FastTable.enableEntityCache]
+ *
+ * @param maxSize maximum number of entries, or of size units when [sizeOf] is given
+ * @param sizeOf approximate size of an entry, every entry counts as one when null
+ */
+class EntityCache<T : Identifiable<Int>> internal constructor(
+    maxSize: Int,
+    private val sizeOf: ((T) -> Int)? = null) {
+
+  private val entries = object : LruCache<Int, T>(maxSize) {
+    override fun sizeOf(key: Int, value: T): Int = this@EntityCache.sizeOf?.invoke(value) ?: 1
+  }
+
+  /**
+   * bumped by every eviction, a row read before an eviction may be older than the write that caused it
+   */
+  @Volatile
+  internal var generation: Long = 0
+    private set
+
+  internal operator fun get(id: Int): T? = entries.get(id)
+
+  /**
+   * @param generation the generation taken before the row was read, the row is dropped if it changed since
+   */
+  @Synchronized
+  internal fun put(t: T, generation: Long) {
+    if (t.getId() > 0 && generation == this.generation) entries.put(t.getId(), t)
+  }
+
+  @Synchronized
+  internal fun evict(id: Int) {
+    generation++
+    entries.remove(id)
+  }
+
+  @Synchronized
+  internal fun evictAll() {
+    generation++
+    entries.evictAll()
+  }
+
+  /**
+   * number of lookups answered from the cache
+   */
+  val hitCount: Int
+    get() = entries.hitCount()
+
+  /**
+   * number of lookups that had to read the table
+   */
+  val missCount: Int
+    get() = entries.missCount()
+
+  /**
+   * number of entries dropped to stay within the maximum size
+   */
+  val evictionCount: Int
+    get() = entries.evictionCount()
+
+  /**
+   * current size, in entries or in the units of sizeOf
+   */
+  val size: Int
+    get() = entries.size()
+
+  override fun toString(): String = "EntityCache(size=$size, hits=$hitCount, misses=$missCount, evictions=$evictionCount)"
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.database.Cursor
+import promise.commons.model.Identifiable
+import java.io.Closeable
+
+/**
+ * iterates over the rows of a cursor deserializing one row at a time
+ * the cursor is closed once the last row has been read or when [close] is called,
+ * close the stream when it is not read to the end
+ *
+ * @param <T> type of the instances read
+ */
+class EntityStream<T : Identifiable<Int>> internal constructor(
+    private val cursor: Cursor,
+    private val reader: (Cursor) -> T) : Iterator<T>, Closeable {
+
+  private var advanced = false
+
+  private var hasRow = false
+
+  override fun hasNext(): Boolean {
+    if (cursor.isClosed) return false
+    if (!advanced) {
+      hasRow = cursor.moveToNext()
+      advanced = true
+      if (!hasRow) close()
+    }
+    return hasRow
+  }
+
+  override fun next(): T {
+    if (!hasNext()) throw NoSuchElementException()
+    advanced = false
+    return reader(cursor)
+  }
+
+  /**
+   * @return a sequence over this stream, it can only be iterated once
+   */
+  fun asSequence(): Sequence<T> = Sequence { this }.constrainOnce()
+
+  override fun close() {
+    if (!cursor.isClosed) cursor.close()
+  }
+}
@@ -20,6 +20,7 @@ import promise.commons.makeInstance
 import promise.commons.model.List
 import promise.commons.util.ClassUtil
 import promise.utils.Visitor
+import java.util.concurrent.Callable
 
 abstract class FastDatabase internal constructor(
     name: String?,
@@ -61,6 +62,17 @@ abstract class FastDatabase internal constructor(
    */
   abstract fun transact(block: FastDatabase.() -> Unit)
 
+  /**
+   * runs the callable in a transaction and returns its result,
+   * the transaction is rolled back if the callable throws
+   */
+  abstract fun <R> runInTransaction(callable: Callable<R>): R
+
+  /**
+   * runs the transactions of this database and of its tables, see [TransactionManager]
+   */
+  abstract val transactionManager: TransactionManager
+
   /**
    * clear records in the passed tables
    */
@@ -76,11 +88,84 @@ abstract class FastDatabase internal constructor(
    */
   abstract fun fallBackToDestructiveMigration()
 
+  /**
+   * saves of rows that already have an id become a single upsert instead of an update followed by an insert,
+   * uses INSERT ... ON CONFLICT DO UPDATE where sqlite supports it and keeps the update followed by an insert otherwise
+   */
+  abstract fun enableUpsert()
+
+  /**
+   * throughput of the last list save done on this database, null if no list has been saved yet
+   */
+  abstract val lastBulkSaveStats: BulkSaveStats?
+
+  /**
+   * keeps the rows returned by table reads until the table is written to through this database,
+   * writes made with raw sql on [writableDatabase] are not seen by the cache
+   *
+   * @param maxRows maximum number of rows held across all cached queries
+   */
+  abstract fun enableQueryCache(maxRows: Int)
+
+  abstract fun disableQueryCache()
+
+  /**
+   * the query cache and its statistics, null if it is not enabled
+   */
+  abstract val queryCache: QueryCache?
+
+  /**
+   * reports the tables written to through this database
+   */
+  abstract val invalidationTracker: InvalidationTracker
+
+  /**
+   * copies the pages of the write ahead log back into the database file,
+   * does nothing unless write ahead logging is enabled
+   *
+   * @return false if readers or writers kept the checkpoint from completing
+   */
+  abstract fun checkpoint(mode: CheckpointMode = CheckpointMode.PASSIVE): Boolean
+
   companion object {
     private val dbCache: ArrayMap<String, FastDatabase> = ArrayMap()
     private val lock = Any()
     const val DEFAULT_NAME = "fast"
 
+    /**
+     * creates the database described by a definition generated at compile time,
+     * neither the database nor its tables are read or instantiated through reflection
+     *
+     * @param name name of the database file, null for an in memory database
+     * @param reactive true to create a [ReactiveFastDatabase]
+     * @param prepackagedDatabase copied in place of the database if it does not exist yet when it is first opened,
+     * ignored for in memory databases
+     */
+    @JvmOverloads
+    @JvmStatic
+    fun createDatabase(definition: DatabaseDefinition,
+                       name: String?,
+                       reactive: Boolean,
+                       migration: Migration? = null,
+                       databaseCreationCallback: DatabaseCreationCallback? = null,
+                       prepackagedDatabase: PrepackagedDatabase? = null): FastDatabase = synchronized(lock) {
+      if (name != null && dbCache.containsKey(name)) return dbCache[name] as FastDatabase
+      val databaseObject =
+          if (reactive) ReactiveFastDatabase(name, definition.version) else FastDatabaseImpl(name, definition.version)
+      databaseObject.setTables(definition.tables)
+      databaseObject.setSchemaMigrations(definition.migrations)
+      databaseObject.setPragmaProfile(definition.pragmaProfile)
+      databaseObject.setMigration(migration)
+      databaseObject.setDatabaseCreationCallback(databaseCreationCallback)
+      if (name != null) {
+        databaseObject.setPrepackagedDatabase(prepackagedDatabase)
+        if (definition.writeAheadLogging) databaseObject.setWriteAheadLoggingEnabled(true)
+        databaseObject.setWalAutoCheckpoint(definition.walAutoCheckpoint)
+        dbCache[name] = databaseObject
+      }
+      databaseObject
+    }
+
     @JvmOverloads
     @JvmStatic
     fun createDatabase(dbClass: Class<*>,
@@ -100,6 +185,9 @@ abstract class FastDatabase internal constructor(
           databaseObject.setTables<FastTable<*>>(classList)
           databaseObject.setMigration(migration)
           databaseObject.setDatabaseCreationCallback(databaseCreationCallback)
+          databaseObject.setPragmaProfile(PragmaProfile.of(database.pragmaProfile))
+          if (database.writeAheadLogging) databaseObject.setWriteAheadLoggingEnabled(true)
+          databaseObject.setWalAutoCheckpoint(database.walAutoCheckpoint)
           dbCache[name] = databaseObject
           return databaseObject
         }
@@ -154,6 +242,9 @@ abstract class FastDatabase internal constructor(
           databaseObject.setTables<FastTable<*>>(classList)
           databaseObject.setMigration(migration)
           databaseObject.setDatabaseCreationCallback(databaseCreationCallback)
+          databaseObject.setPragmaProfile(PragmaProfile.of(database.pragmaProfile))
+          if (database.writeAheadLogging) databaseObject.setWriteAheadLoggingEnabled(true)
+          databaseObject.setWalAutoCheckpoint(database.walAutoCheckpoint)
           dbCache[name] = databaseObject
           return databaseObject
         }
@@ -188,4 +279,26 @@ abstract class FastDatabase internal constructor(
       }
     }
   }
-}
\ No newline at end of file
+}
+
+/**
+ * how [FastDatabase.checkpoint] treats connections using the write ahead log
+ */
+enum class CheckpointMode {
+  /**
+   * copies as many pages as possible without waiting for readers or writers
+   */
+  PASSIVE,
+  /**
+   * waits for writers and for readers of older snapshots, then copies every page
+   */
+  FULL,
+  /**
+   * like [FULL], then waits for readers so the next writer starts the log from the beginning
+   */
+  RESTART,
+  /**
+   * like [RESTART], then truncates the log file to zero bytes
+   */
+  TRUNCATE
+}
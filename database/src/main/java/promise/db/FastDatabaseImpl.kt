@@ -25,6 +25,7 @@ import promise.database.Table
 import promise.model.IdentifiableList
 import promise.utils.Visitor
 import java.util.*
+import java.util.concurrent.Callable
 
 @Suppress("UNCHECKED_CAST")
 open class FastDatabaseImpl constructor(
@@ -38,8 +39,134 @@ open class FastDatabaseImpl constructor(
     this.fallBackToDestructiveMigration = true
   }
 
+  private var upsert: Boolean = false
+
+  override fun enableUpsert() {
+    this.upsert = true
+  }
+
+  /**
+   * ON CONFLICT DO UPDATE is available from sqlite 3.24.0
+   */
+  private val supportsNativeUpsert: Boolean by lazy {
+    readableDatabase.query("SELECT sqlite_version()").use {
+      if (!it.moveToFirst()) return@lazy false
+      val version = it.getString(0).split(".").map { part -> part.toIntOrNull() ?: 0 }
+      val major = version.getOrElse(0) { 0 }
+      val minor = version.getOrElse(1) { 0 }
+      major > 3 || major == 3 && minor >= 24
+    }
+  }
+
+  /**
+   * without native upsert the update and insert stay two statements, INSERT OR REPLACE would
+   * delete any other row the saved one conflicts with on a unique column
+   */
+  private val saveMode: SaveMode
+    get() = if (upsert && supportsNativeUpsert) SaveMode.UPSERT else SaveMode.UPDATE_OR_INSERT
+
+  /**
+   * the save statements of the tables, compiled on the first save and reused by every save after
+   */
+  private val saveStatements: SaveStatementCache = SaveStatementCache()
+
   private val cacheMap: ArrayMap<String, Any> = ArrayMap()
 
+  @Volatile
+  final override var queryCache: QueryCache? = null
+    private set
+
+  final override val invalidationTracker: InvalidationTracker = InvalidationTracker()
+
+  final override val transactionManager: TransactionManager =
+      TransactionManager({ writableDatabase }, { flushInvalidations(it) })
+
+  /**
+   * tables written inside the running transaction, invalidated again once it ends
+   * so results read by other connections before the commit are not kept
+   * and observers only hear about committed writes
+   */
+  private val pendingInvalidations: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
+  /**
+   * closes the compiled save statements and the database, the next call opens it again
+   */
+  override fun close() {
+    saveStatements.close()
+    super.close()
+  }
+
+  override fun enableQueryCache(maxRows: Int) {
+    queryCache = QueryCache(maxRows)
+  }
+
+  override fun disableQueryCache() {
+    queryCache = null
+  }
+
+  /**
+   * runs a write holding the writer lock, inside a transaction block the write joins its transaction
+   */
+  /**
+   * the table is invalidated even if the write fails, a bulk save may have committed chunks before it did
+   */
+  private fun <R> write(tableCrud: TableCrud<*, in SupportSQLiteDatabase>, block: () -> R): R =
+      try {
+        transactionManager.withWriteLock(block)
+      } finally {
+        invalidate(tableCrud)
+      }
+
+  private fun invalidate(tableCrud: TableCrud<*, in SupportSQLiteDatabase>) {
+    queryCache?.invalidate(tableCrud.name)
+    if (writableDatabase.inTransaction()) pendingInvalidations.add(tableCrud.name)
+    else invalidationTracker.notifyInvalidated(setOf(tableCrud.name))
+  }
+
+  /**
+   * drops what was cached from the tables written in the transaction that ended,
+   * observers are only told about the writes if they were committed
+   *
+   * @param committed false if the transaction was rolled back
+   */
+  internal fun flushInvalidations(committed: Boolean) {
+    val changed = synchronized(pendingInvalidations) {
+      HashSet(pendingInvalidations).also { pendingInvalidations.clear() }
+    }
+    if (changed.isEmpty()) return
+    /*
+     * other connections read the old rows before a commit, this one read the rolled back rows before a rollback
+     */
+    queryCache?.let { cache -> changed.forEach { cache.invalidate(it) } }
+    tables?.forEach { if (changed.contains(it.name)) it.entityCache?.evictAll() }
+    if (committed) invalidationTracker.notifyInvalidated(changed)
+  }
+
+  /**
+   * copied in place of the database on first open, then dropped
+   */
+  @Volatile
+  private var prepackagedDatabase: PrepackagedDatabase? = null
+
+  internal fun setPrepackagedDatabase(prepackagedDatabase: PrepackagedDatabase?) {
+    this.prepackagedDatabase = prepackagedDatabase
+  }
+
+  /**
+   * copies the prepackaged database on the thread that first opens the database,
+   * so the copy does not hold the lock [FastDatabase.createDatabase] creates databases under
+   * and fails reactive work subscribed after the database was closed, see [DatabaseSchedulers]
+   */
+  final override fun beforeOpen() {
+    DatabaseSchedulers.checkAccepted()
+    if (prepackagedDatabase == null) return
+    synchronized(this) {
+      val prepackaged = prepackagedDatabase ?: return
+      prepackaged.copyTo(databaseName, version)
+      prepackagedDatabase = null
+    }
+  }
+
   private var migration: Migration? = null
 
   private var databaseCreationCallback: DatabaseCreationCallback? = null
@@ -63,7 +190,9 @@ open class FastDatabaseImpl constructor(
           i++
         }
       }
-      upgradeTables(database, oldVersion, newVersion)
+      val scripts = schemaMigrationsBetween(oldVersion, newVersion)
+      if (scripts != null) migrateSchema(database, scripts)
+      else upgradeTables(database, oldVersion, newVersion)
     } catch (e: Throwable) {
       if (fallBackToDestructiveMigration) {
         for (table in Conditions.checkNotNull(tables())) try {
@@ -72,14 +201,75 @@ open class FastDatabaseImpl constructor(
           LogUtil.e(TAG, tableError)
         }
         onCreate(database)
-      } else LogUtil.e(TAG, e)
+      } else {
+        LogUtil.e(TAG, e)
+        throw e
+      }
     }
+    saveStatements.close()
+    queryCache?.invalidateAll()
   }
 
   private fun onUpgradeDatabase(database: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) {
     if (migration != null) migration!!.onMigrate(this, database, oldVersion, newVersion)
   }
 
+  /**
+   * the generated migrations that take the schema from one version to the other,
+   * null if a version in between has no snapshot
+   */
+  private fun schemaMigrationsBetween(oldVersion: Int, newVersion: Int): kotlin.collections.List<SchemaMigration>? {
+    if (schemaMigrations.isEmpty()) return null
+    val path = ArrayList<SchemaMigration>()
+    var version = oldVersion
+    while (version < newVersion) {
+      val next = schemaMigrations.find { it.fromVersion == version && it.toVersion <= newVersion } ?: return null
+      path.add(next)
+      version = next.toVersion
+    }
+    return path
+  }
+
+  /**
+   * runs the migrations in one transaction, columns a migration callback already added are skipped
+   * the tables are only read for those columns when a callback is set, once per table
+   * foreign keys are only turned on after the upgrade, so rebuilt tables keep the rows referencing them
+   * and are checked before the migrations commit
+   */
+  private fun migrateSchema(database: SupportSQLiteDatabase, migrations: kotlin.collections.List<SchemaMigration>) {
+    val columns: MutableMap<String, MutableSet<String>>? = if (migration != null) HashMap() else null
+    database.beginTransaction()
+    try {
+      migrations.forEach { migration ->
+        migration.statements.forEach {
+          val added = if (columns != null) ADD_COLUMN.find(it) else null
+          if (added != null) {
+            val (table, column) = added.destructured
+            if (!columns!!.getOrPut(table) { columnsOf(database, table) }.add(column)) return@forEach
+          } else {
+            // any other statement may rebuild a table, its columns are read again when next needed
+            columns?.clear()
+          }
+          LogUtil.d(TAG, it)
+          database.execSQL(it)
+        }
+      }
+      database.checkForeignKeys()
+      database.setTransactionSuccessful()
+    } finally {
+      database.endTransaction()
+    }
+  }
+
+  private fun columnsOf(database: SupportSQLiteDatabase, table: String): MutableSet<String> {
+    val columns = HashSet<String>()
+    database.query("PRAGMA table_info($table)").use {
+      val nameIndex = it.getColumnIndex("name")
+      while (it.moveToNext()) columns.add(it.getString(nameIndex))
+    }
+    return columns
+  }
+
   override fun name(): String = this.databaseName
 
   private var tables: List<out FastTable<*>>? = null
@@ -88,18 +278,19 @@ open class FastDatabaseImpl constructor(
       Conditions.checkNotNull(tables, "tables not found for this database")
           as List<TableCrud<*, in SupportSQLiteDatabase>>
 
+  /**
+   * tables created from a [DatabaseDefinition], found without reading their annotations
+   */
+  private val definedTables: ArrayMap<Class<*>, FastTable<*>> = ArrayMap()
+
   override fun <T : TableCrud<*, in SupportSQLiteDatabase>> obtain(tableClass: Class<out TableCrud<*, in SupportSQLiteDatabase>>): T {
+    definedTables[tableClass]?.let { return it as T }
     fun <T : TableCrud<*, in SupportSQLiteDatabase>> makeTable(tableClass: Class<out TableCrud<*, in SupportSQLiteDatabase>>): T {
       if (ClassUtil.hasAnnotation(tableClass, Table::class.java)) {
         val table = tableClass.getAnnotation(Table::class.java)!!
         if (cacheMap.containsKey(table.tableName)) return cacheMap[table.tableName] as T
         val tableObject: FastTable<*> = createInstance<FastTable<*>>(clazz = tableClass.kotlin, args = arrayOf(this))
-        tableObject.setNameOfTable(table.tableName)
-        tableObject.setArgs(ArrayMap<String, Any>().apply {
-          put(INDEXES, table.indices)
-          put(FOREIGN_kEYS, table.foreignKeys)
-          put(COMPOUND_INDEXES, table.compoundIndexes)
-        })
+        tableObject.setMetadata(TableMetadata.of(table))
         cacheMap[table.tableName] = tableObject
         return tableObject as T
       }
@@ -114,6 +305,24 @@ open class FastDatabaseImpl constructor(
     }
   }
 
+  internal fun setTables(definitions: Array<TableDefinition<*>>) {
+    val tables = List<FastTable<*>>(definitions.size)
+    definitions.forEach {
+      val table = it.factory.create(this)
+      table.setMetadata(it.metadata)
+      definedTables[it.tableClass] = table
+      cacheMap[it.metadata.tableName] = table
+      tables.add(table)
+    }
+    this.tables = tables
+  }
+
+  private var schemaMigrations: Array<SchemaMigration> = emptyArray()
+
+  internal fun setSchemaMigrations(migrations: Array<SchemaMigration>) {
+    this.schemaMigrations = migrations
+  }
+
   internal fun setMigration(migration: Migration?) {
     this.migration = migration
   }
@@ -123,13 +332,21 @@ open class FastDatabaseImpl constructor(
     return this
   }
 
+  /**
+   * creates all the tables in one transaction, a table that fails rolls back the others
+   * and fails the open, so afterCreate never sees a rolled back schema
+   */
+  @Throws(DBError::class)
   private fun create(database: SupportSQLiteDatabase) {
-    var created = true
-    for (table in Conditions.checkNotNull(tables())) created = try {
-      created && create(table, database)
+    database.beginTransaction()
+    try {
+      for (table in Conditions.checkNotNull(tables())) create(table, database)
+      database.setTransactionSuccessful()
     } catch (dbError: DBError) {
       LogUtil.e(TAG, dbError)
-      return
+      throw dbError
+    } finally {
+      database.endTransaction()
     }
   }
 
@@ -198,18 +415,18 @@ open class FastDatabaseImpl constructor(
   }
 
   override fun <T : Identifiable<Int>> find(tableCrud: TableCrud<T, in SupportSQLiteDatabase>): TableCrud.Extras<T> =
-      checkTableExist(tableCrud).accept(FetchExtrasVisitor(readableDatabase)) as TableCrud.Extras<T>
+      checkTableExist(tableCrud).accept(FetchExtrasVisitor(readableDatabase, queryCache)) as TableCrud.Extras<T>
   //return checkTableExist(tableCrud).onFind(readableDatabase)
 
   override fun <T : Identifiable<Int>> findAll(tableCrud: TableCrud<T, in SupportSQLiteDatabase>): IdentifiableList<out T> =
-      checkTableExist(tableCrud).accept(FetchAllVisitor(readableDatabase, null)) as IdentifiableList<out T>
+      checkTableExist(tableCrud).accept(FetchAllVisitor(readableDatabase, null, queryCache)) as IdentifiableList<out T>
 
   override fun <T : Identifiable<Int>> update(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Boolean =
-      checkTableExist(tableCrud).accept(UpdateVisitor(writableDatabase, t, null)) as Boolean
+      write(tableCrud) { checkTableExist(tableCrud).accept(UpdateVisitor(writableDatabase, t, null)) as Boolean }
 
   override fun <T : Identifiable<Int>> update(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>, column: Column<*>): Boolean =
       try {
-        checkTableExist(tableCrud).accept(UpdateVisitor(writableDatabase, t, column)) as Boolean
+        write(tableCrud) { checkTableExist(tableCrud).accept(UpdateVisitor(writableDatabase, t, column)) as Boolean }
       } catch (tableError: TableError) {
         LogUtil.e(TAG, "update error", tableError)
         false
@@ -217,16 +434,20 @@ open class FastDatabaseImpl constructor(
 
   override fun <T : Identifiable<Int>> findAll(tableCrud: TableCrud<T, in SupportSQLiteDatabase>,
                                                vararg columns: Column<*>): IdentifiableList<out T> =
-      checkTableExist(tableCrud).accept(FetchAllVisitor(readableDatabase, columns)) as IdentifiableList<out T>
+      checkTableExist(tableCrud).accept(FetchAllVisitor(readableDatabase, columns, queryCache)) as IdentifiableList<out T>
+
+  override fun <T : Identifiable<Int>> findAll(tableCrud: TableCrud<T, in SupportSQLiteDatabase>,
+                                               queryBuilder: QueryBuilder): IdentifiableList<out T> =
+      checkTableExist(tableCrud).accept(FetchAllVisitor(readableDatabase, null, queryCache, queryBuilder)) as IdentifiableList<out T>
 
   override fun <T : Identifiable<Int>> delete(tableCrud: TableCrud<T, in SupportSQLiteDatabase>, t: T): Boolean =
-      checkTableExist(tableCrud).accept(DeleteVisitor(writableDatabase, t)) as Boolean
+      write(tableCrud) { checkTableExist(tableCrud).accept(DeleteVisitor(writableDatabase, t)) as Boolean }
 
   override fun delete(tableCrud: TableCrud<*, in SupportSQLiteDatabase>, column: Column<*>): Boolean =
-      checkTableExist(tableCrud).acceptErasure(DeleteErasureVisitor(writableDatabase, column)) as Boolean
+      write(tableCrud) { checkTableExist(tableCrud).acceptErasure(DeleteErasureVisitor(writableDatabase, column)) as Boolean }
 
   override fun delete(tableCrud: TableCrud<*, in SupportSQLiteDatabase>): Boolean =
-      checkTableExist(tableCrud).acceptErasure(DeleteErasureVisitor(writableDatabase)) as Boolean
+      write(tableCrud) { checkTableExist(tableCrud).acceptErasure(DeleteErasureVisitor(writableDatabase)) as Boolean }
 
   @SafeVarargs
   override fun delete(vararg tableCruds: TableCrud<*, in SupportSQLiteDatabase>): Boolean {
@@ -236,13 +457,27 @@ open class FastDatabaseImpl constructor(
   }
 
   override fun <T> delete(tableCrud: TableCrud<*, in SupportSQLiteDatabase>, column: Column<T>, list: List<out T>): Boolean =
-      checkTableExist(tableCrud).acceptErasure(DeleteListErasureVisitor(writableDatabase, column, list)) as Boolean
+      deleteIn(tableCrud, column, list) >= 0
+
+  override fun <T> deleteIn(tableCrud: TableCrud<*, in SupportSQLiteDatabase>, column: Column<T>, list: List<out T>): Int =
+      write(tableCrud) { checkTableExist(tableCrud).acceptErasure(DeleteListErasureVisitor(writableDatabase, column, list)) as Int }
 
   override fun <T : Identifiable<Int>> save(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Long =
-      checkTableExist(tableCrud).accept(SaveVisitor(UpdateVisitor(writableDatabase, t, null), writableDatabase, t)) as Long
+      write(tableCrud) { checkTableExist(tableCrud).accept(SaveVisitor(UpdateVisitor(writableDatabase, t, null), writableDatabase, t, saveStatements, saveMode)) as Long }
 
   override fun <T : Identifiable<Int>> save(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Boolean =
-      checkTableExist(tableCrud).accept(SaveListVisitor(writableDatabase, list)) as Boolean
+      save(list, tableCrud, 0)
+
+  override fun <T : Identifiable<Int>> save(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in SupportSQLiteDatabase>, chunkSize: Int): Boolean {
+    val visitor = SaveListVisitor(writableDatabase, list, saveStatements, chunkSize, saveMode)
+    val saved = write(tableCrud) { checkTableExist(tableCrud).accept(visitor) as Boolean }
+    if (visitor.stats != null) lastBulkSaveStats = visitor.stats
+    return saved
+  }
+
+  @Volatile
+  final override var lastBulkSaveStats: BulkSaveStats? = null
+    private set
 
   override fun deleteAll(): Boolean = synchronized(FastDatabaseImpl::class.java) {
     var deleted = true
@@ -260,16 +495,15 @@ open class FastDatabaseImpl constructor(
   override fun getLastId(tableCrud: TableCrud<*, in SupportSQLiteDatabase>): Int =
       checkTableExist(tableCrud).acceptErasure(FetchLastIdVisitor(readableDatabase)) as Int
 
-  override fun transact(block: FastDatabase.() -> Unit) = synchronized(this) {
-    val db = writableDatabase
-    try {
-      db.beginTransaction()
-      block.invoke(this)
-      db.setTransactionSuccessful()
-    } finally {
-      db.endTransaction()
-    }
-  }
+  override fun transact(block: FastDatabase.() -> Unit) =
+      transactionManager.inTransaction { block.invoke(this) }
+
+  override fun checkpoint(mode: CheckpointMode): Boolean =
+      writableDatabase.query("PRAGMA wal_checkpoint(${mode.name})").use {
+        !it.moveToFirst() || it.getInt(0) == 0
+      }
+
+  override fun <R> runInTransaction(callable: Callable<R>): R = transactionManager.runInTransaction(callable = callable)
 
   override fun <R : Any> accept(visitor: Visitor<FastDatabase, R>): R = visitor.visit(this)
 
@@ -282,6 +516,7 @@ TODO to be revisited
 
   companion object {
     private val TAG: String = LogUtil.makeTag(FastDatabase::class.java)
+    private val ADD_COLUMN = Regex("""^ALTER TABLE (\w+) ADD COLUMN `(\w+)`""")
   }
 
   init {
@@ -13,20 +13,36 @@
 
 package promise.db;
 
+import android.database.Cursor;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.sqlite.db.SupportSQLiteOpenHelper;
 import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import promise.commons.AndroidPromise;
 
 public abstract class FastDatabaseOpenHelper extends SupportSQLiteOpenHelper.Callback {
 
+  private static final String[] PRAGMAS = {"page_size", "cache_size", "mmap_size", "synchronous",
+      "temp_store", "journal_mode", "journal_size_limit", "busy_timeout", "foreign_keys"};
+
   private SupportSQLiteOpenHelper helper;
 
   private Corrupt errorHandler;
 
+  private volatile int walAutoCheckpoint = -1;
+
+  private volatile boolean writeAheadLogging = false;
+
+  private PragmaProfile pragmaProfile;
+
+  private volatile boolean configured = false;
+
   public FastDatabaseOpenHelper(@Nullable String name,
                                 int version) {
     super(version);
@@ -49,10 +65,98 @@ public abstract class FastDatabaseOpenHelper extends SupportSQLiteOpenHelper.Cal
     if (this.errorHandler != null) this.errorHandler.onCorrupt(db);
   }
 
+  /**
+   * switches the journal to write ahead logging, reads made on other threads than the one writing
+   * are served by the framework's pool of read connections and no longer wait for the write to finish
+   * must not be called while a transaction is open
+   *
+   * @param enabled true to use wal, false to go back to the rollback journal
+   */
+  public void setWriteAheadLoggingEnabled(boolean enabled) {
+    helper.setWriteAheadLoggingEnabled(enabled);
+    this.writeAheadLogging = enabled;
+  }
+
+  /**
+   * true if write ahead logging was enabled, read from the setting so it never opens the database
+   */
+  public boolean isWriteAheadLoggingEnabled() {
+    return writeAheadLogging;
+  }
+
+  /**
+   * sets the number of wal pages after which a commit checkpoints the log,
+   * applied when the database is opened, or straight away if it is already open
+   * so setting it never opens the database
+   *
+   * @param pages zero disables automatic checkpoints, negative keeps the sqlite default
+   */
+  public void setWalAutoCheckpoint(int pages) {
+    this.walAutoCheckpoint = pages;
+    if (pages >= 0 && configured) applyWalAutoCheckpoint(getWritableDatabase());
+  }
+
+  private void applyWalAutoCheckpoint(SupportSQLiteDatabase db) {
+    Cursor cursor = db.query("PRAGMA wal_autocheckpoint = " + walAutoCheckpoint);
+    cursor.close();
+  }
+
+
+  /**
+   * sets the pragmas applied each time the database is opened,
+   * a database that is already open keeps its pragmas until it is opened again
+   *
+   * @param pragmaProfile the pragmas, null to keep the sqlite defaults
+   */
+  public void setPragmaProfile(@Nullable PragmaProfile pragmaProfile) {
+    this.pragmaProfile = pragmaProfile;
+  }
+
+  @Nullable
+  public PragmaProfile getPragmaProfile() {
+    return pragmaProfile;
+  }
+
+  private void applyPragmaProfile(SupportSQLiteDatabase db) {
+    for (String statement : pragmaProfile.statements()) {
+      Cursor cursor = db.query(statement);
+      cursor.close();
+    }
+  }
+
+  /**
+   * reads the values of the tuning pragmas the database is using, for diagnostics
+   * the values are those of the primary connection, see {@link PragmaProfile}
+   *
+   * @return pragma name to its value
+   */
+  public Map<String, String> getEffectivePragmas() {
+    SupportSQLiteDatabase db = getWritableDatabase();
+    Map<String, String> pragmas = new LinkedHashMap<>();
+    /*
+     * queries outside a transaction may run on a reader connection
+     */
+    db.beginTransaction();
+    try {
+      for (String pragma : PRAGMAS) {
+        Cursor cursor = db.query("PRAGMA " + pragma);
+        try {
+          if (cursor.moveToFirst()) pragmas.put(pragma, cursor.getString(0));
+        } finally {
+          cursor.close();
+        }
+      }
+    } finally {
+      db.endTransaction();
+    }
+    return pragmas;
+  }
 
   @Override
   public final void onConfigure(SupportSQLiteDatabase db) {
     super.onConfigure(db);
+    if (pragmaProfile != null) applyPragmaProfile(db);
+    configured = true;
   }
 
   @Override
@@ -64,13 +168,31 @@ public abstract class FastDatabaseOpenHelper extends SupportSQLiteOpenHelper.Cal
   public final void onOpen(@NonNull SupportSQLiteDatabase db) {
     super.onOpen(db);
     db.execSQL("PRAGMA foreign_keys = ON");
+    if (walAutoCheckpoint >= 0) applyWalAutoCheckpoint(db);
+  }
+
+  /**
+   * closes every connection to the database, the next call to get a database opens it again
+   */
+  public void close() {
+    helper.close();
+    configured = false;
+  }
+
+  /**
+   * called on the thread asking for a database before the helper opens it,
+   * work done here such as copying a prepackaged file runs outside of any lock of the helper
+   */
+  protected void beforeOpen() {
   }
 
   public final SupportSQLiteDatabase getReadableDatabase() {
+    beforeOpen();
     return helper.getReadableDatabase();
   }
 
   public final SupportSQLiteDatabase getWritableDatabase() {
+    beforeOpen();
     return helper.getWritableDatabase();
   }
 
@@ -16,6 +16,7 @@ import android.annotation.SuppressLint
 import android.database.Cursor
 import android.database.SQLException
 import androidx.sqlite.db.SupportSQLiteDatabase
+import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 import promise.commons.data.log.LogUtil
@@ -23,14 +24,12 @@ import promise.commons.model.Identifiable
 import promise.commons.model.List
 import promise.commons.model.List.fromArray
 import promise.commons.util.Conditions
-import promise.database.Table
+import promise.db.criteria.Criteria
+import promise.db.projection.Projection
 import promise.model.ITimeStamped
 import promise.model.IdentifiableList
 import java.util.*
 
-internal const val INDEXES = "indexes"
-internal const val COMPOUND_INDEXES = "compound_indexes"
-internal const val FOREIGN_kEYS = "foreign_keys"
 
 /**
  * This class models database queries
@@ -90,6 +89,11 @@ abstract class FastTable<T : Identifiable<Int>>
      */
     private const val ALTER_COMMAND = "ALTER TABLE"
 
+    /**
+     * prefix of the table rows are copied into during a [rebuild]
+     */
+    private const val REBUILD_PREFIX = "promise_rebuild_"
+
   }
 
   override fun single(cursor: Cursor): T {
@@ -99,8 +103,9 @@ abstract class FastTable<T : Identifiable<Int>>
 
   override fun collection(cursor: Cursor): IdentifiableList<out T> {
     val collection = IdentifiableList<T>()
+    val read = rowReader(cursor)
     while (cursor.moveToNext() && !cursor.isClosed) {
-      collection.add(getWithId(cursor))
+      collection.add(read(cursor))
     }
     cursor.close()
     return collection
@@ -141,29 +146,66 @@ abstract class FastTable<T : Identifiable<Int>>
     }
 
   /**
-   * gets all the columns for this model from the child class for creation purposes
-   * see [.onCreate]
+   * identity map for [findById], null until [enableEntityCache] is called
+   */
+  @Volatile
+  var entityCache: EntityCache<T>? = null
+    private set
+
+  /**
+   * keeps up to maxEntries rows read by id in memory, writes through this table keep it coherent
    *
-   * @return list of columns
+   * @param maxEntries maximum number of rows kept
    */
-  abstract val columns: List<out Column<*>>
+  fun enableEntityCache(maxEntries: Int) {
+    entityCache = EntityCache(maxEntries)
+  }
 
   /**
+   * keeps rows read by id in memory up to an approximate size
    *
+   * @param maxSize maximum total size, in the units returned by sizeOf
+   * @param sizeOf approximate size of a row, bytes for instance
    */
-  private var nameOfTable: String = ""
+  fun enableEntityCache(maxSize: Int, sizeOf: (T) -> Int) {
+    entityCache = EntityCache(maxSize, sizeOf)
+  }
 
-  private lateinit var args: Map<String, Any>
+  fun disableEntityCache() {
+    entityCache = null
+  }
+
+  private fun evict(t: T) {
+    entityCache?.evict(t.getId())
+  }
+
+  private fun evict(list: IdentifiableList<out T>) {
+    val cache = entityCache ?: return
+    list.forEach { cache.evict(it.getId()) }
+  }
 
-  internal fun setArgs(args: Map<String, Any>) {
-    this.args = args
+  private fun evictAll() {
+    entityCache?.evictAll()
   }
 
   /**
+   * gets all the columns for this model from the child class for creation purposes
+   * see [.onCreate]
    *
+   * @return list of columns
    */
-  internal fun setNameOfTable(name: String) {
-    this.nameOfTable = name
+  abstract val columns: List<out Column<*>>
+
+  /**
+   *
+   */
+  private var nameOfTable: String = ""
+
+  private var metadata: TableMetadata? = null
+
+  internal fun setMetadata(metadata: TableMetadata) {
+    this.nameOfTable = metadata.tableName
+    this.metadata = metadata
   }
 
   /**
@@ -172,13 +214,13 @@ abstract class FastTable<T : Identifiable<Int>>
   final override val name: String
     get() = nameOfTable
 
-  private fun generateCompoundIndexQuery(compoundIndex: Table.CompoundIndex): String {
+  private fun generateCompoundIndexQuery(compoundIndex: TableMetadata.CompoundIndex): String {
     var columnNames = ""
     var indexSql = "("
-    val indexes = compoundIndex.indexes
-    indexes.forEachIndexed { i: Int, index: Table.Index ->
-      columnNames = if (i == indexes.size - 1) columnNames + index.columnName else "$columnNames${index.columnName}_"
-      indexSql = if (i == indexes.size - 1) indexSql + index.columnName else "$indexSql${index.columnName}, "
+    val indexes = compoundIndex.columns
+    indexes.forEachIndexed { i: Int, columnName: String ->
+      columnNames = if (i == indexes.size - 1) columnNames + columnName else "$columnNames${columnName}_"
+      indexSql = if (i == indexes.size - 1) indexSql + columnName else "$indexSql$columnName, "
     }
     indexSql = "$indexSql);"
     return if (compoundIndex.unique) {
@@ -186,11 +228,6 @@ abstract class FastTable<T : Identifiable<Int>>
     } else "CREATE INDEX IF NOT EXISTS idx_$columnNames ON $nameOfTable $indexSql"
   }
 
-  private fun generateIndexQueryForTableIndex(index: Table.Index): String {
-    val indexSql = "(${index.columnName});"
-    return "CREATE INDEX IF NOT EXISTS idx_${index.columnName} ON $nameOfTable $indexSql"
-  }
-
   private fun generateIndexQuery(index: String): String {
     val indexSql = "(${index});"
     return "CREATE INDEX IF NOT EXISTS idx_${index} ON $nameOfTable $indexSql"
@@ -224,37 +261,112 @@ abstract class FastTable<T : Identifiable<Int>>
    */
   @Throws(TableError::class)
   override fun onCreate(x: SupportSQLiteDatabase): Boolean {
-    var sql = CREATE_PREFIX
-    /*
-     * add the opening braces after select prefix, see {@link FastTable#CREATE_PREFIX}
-     */sql = "$sql$name("
+    val statements = metadata?.createStatements
+    try {
+      if (statements != null && statements.isNotEmpty()) statements.forEach {
+        LogUtil.d(TAG, it)
+        x.execSQL(it)
+      } else {
+        val sql = createTableQuery()
+        LogUtil.d(TAG, sql)
+        x.execSQL(sql)
+        metadata?.let {
+          if (it.compoundIndexes.isNotEmpty()) addCompoundIndices(x, it.compoundIndexes)
+          if (it.indices.isNotEmpty()) addIndices(x, it.indices)
+        }
+      }
+    } catch (e: SQLException) {
+      throw TableError(e)
+    }
+    return true
+  }
+
+  /**
+   * builds the create statement from the columns, used when no statements were generated for the table
+   */
+  private fun createTableQuery(tableName: String = name): String {
     val columns = Conditions.checkNotNull(columns)
     /*
      * sorts the column in ascending order, see {@link Column#ascending()} comparator
      */Collections.sort(columns, Column.ascending)
-    val columns1 = List<Column<*>>()
+    val sql = StringBuilder(CREATE_PREFIX).append(tableName).append('(')
     /*
      * add the three additional columns to the creation script
-     */columns1.add(id)
-    columns1.addAll(columns)
-    columns1.add(createdAt)
-    columns1.add(updatedAt)
-    for (i in columns1.indices) {
-      val column = columns1[i]
-      sql = if (i == columns1.size - 1) sql + column.toString() else "$sql$column, "
+     */sql.append(id).append(", ")
+    columns.forEach { sql.append(it).append(", ") }
+    sql.append(createdAt).append(", ").append(updatedAt)
+    return sql.append(");").toString()
+  }
+
+  /**
+   * rebuilds the table with its current columns without reading any row into memory,
+   * the rows are copied into a new table inside the database which then replaces the old one
+   * columns of the old table the new one no longer has are dropped, columns only the new one has are null
+   * unless mapped, can be called from [Migration.onMigrate] and [onUpgrade]
+   *
+   * @param database writable sql database
+   * @param mapping column of the new table to the sql copied into it, either an expression
+   * over the columns of the old table, such as a renamed column, or a default value
+   * foreign keys are turned off while the table is swapped so rows referencing it are kept,
+   * inside a transaction the pragma can not change and dropping the table runs their ON DELETE actions
+   *
+   * @throws TableError if theirs an sql error or a row references a missing row, nothing is changed
+   */
+  @JvmOverloads
+  @Throws(TableError::class)
+  fun rebuild(database: SupportSQLiteDatabase, mapping: Map<String, String> = emptyMap()) {
+    val oldColumns = HashSet<String>()
+    database.query("PRAGMA table_info(`$name`)").use {
+      val nameIndex = it.getColumnIndexOrThrow("name")
+      while (it.moveToNext()) oldColumns.add(it.getString(nameIndex))
+    }
+    val newName = REBUILD_PREFIX + name
+    val targets = ArrayList<String>()
+    val sources = ArrayList<String>()
+    val columns = ArrayList<Column<*>>()
+    columns.add(id)
+    columns.addAll(Conditions.checkNotNull(this.columns))
+    columns.add(createdAt)
+    columns.add(updatedAt)
+    columns.forEach {
+      val source = mapping[it.name] ?: if (oldColumns.contains(it.name)) "`${it.name}`" else return@forEach
+      targets.add("`${it.name}`")
+      sources.add(source)
     }
-    sql = "$sql);"
+    val statements = ArrayList<String>()
+    statements.add("DROP TABLE IF EXISTS `$newName`;")
+    statements.add(createTableQuery(newName))
+    statements.add("INSERT INTO `$newName` (${targets.joinToString(", ")}) SELECT ${sources.joinToString(", ")} FROM `$name`;")
+    statements.add("DROP TABLE `$name`;")
+    statements.add("$ALTER_COMMAND `$newName` RENAME TO `$name`;")
     try {
-      LogUtil.d(TAG, sql)
-      x.execSQL(sql)
-      val arrayOfCompoundIndices = args[COMPOUND_INDEXES] as Array<Table.CompoundIndex>
-      if (!arrayOfCompoundIndices.isNullOrEmpty()) addCompoundIndices(x, arrayOfCompoundIndices)
-      val arrayOfIndices = args[INDEXES] as Array<Table.Index>
-      if (!arrayOfIndices.isNullOrEmpty()) addIndices(x, arrayOfIndices)
+      database.withoutForeignKeys {
+        database.beginTransaction()
+        try {
+          statements.forEach {
+            LogUtil.d(TAG, it)
+            database.execSQL(it)
+          }
+          /*
+           * dropping the old table dropped its indexes
+           */
+          val createStatements = metadata?.createStatements
+          if (createStatements != null && createStatements.isNotEmpty()) createStatements.drop(1).forEach {
+            database.execSQL(it)
+          } else metadata?.let {
+            if (it.compoundIndexes.isNotEmpty()) addCompoundIndices(database, it.compoundIndexes)
+            if (it.indices.isNotEmpty()) addIndices(database, it.indices)
+          }
+          database.checkForeignKeys()
+          database.setTransactionSuccessful()
+        } finally {
+          database.endTransaction()
+        }
+      }
     } catch (e: SQLException) {
       throw TableError(e)
     }
-    return true
+    evictAll()
   }
 
   /*
@@ -296,7 +408,7 @@ abstract class FastTable<T : Identifiable<Int>>
   }
 
   @Throws(TableError::class)
-  private fun addCompoundIndices(database: SupportSQLiteDatabase, indexes: Array<Table.CompoundIndex>) {
+  private fun addCompoundIndices(database: SupportSQLiteDatabase, indexes: Array<TableMetadata.CompoundIndex>) {
     indexes.forEach {
       val indexSql = generateCompoundIndexQuery(it)
       LogUtil.d(TAG, indexSql)
@@ -304,9 +416,9 @@ abstract class FastTable<T : Identifiable<Int>>
     }
   }
 
-  private fun addIndices(database: SupportSQLiteDatabase, indexes: Array<Table.Index>) {
+  private fun addIndices(database: SupportSQLiteDatabase, indexes: Array<String>) {
     indexes.forEach {
-      val indexSql = generateIndexQueryForTableIndex(it)
+      val indexSql = generateIndexQuery(it)
       LogUtil.d(TAG, indexSql)
       database.execSQL(indexSql)
     }
@@ -358,45 +470,68 @@ abstract class FastTable<T : Identifiable<Int>>
    * @param t
    * @return
    */
-  override fun save(t: T): Long = database.save(t, this)
+  override fun save(t: T): Long = database.save(t, this).also { evict(t) }
 
   /**
    * @param t
    * @return
    */
-  override fun saveAsync(t: T): Single<Long> = reactiveDatabase.saveAsync(t, this)
+  override fun saveAsync(t: T): Single<Long> = reactiveDatabase.saveAsync(t, this).doOnSuccess { evict(t) }
 
   /**
    * @param list
    * @return
    */
-  override fun save(list: IdentifiableList<out T>): Boolean = database.save(list, this)
+  override fun save(list: IdentifiableList<out T>): Boolean = save(list, 0)
 
   /**
    * @param list
    * @return
    */
   override fun saveAsync(list: IdentifiableList<out T>): Single<Boolean> =
-      reactiveDatabase.saveAsync(list, this)
+      reactiveDatabase.saveAsync(list, this).doOnEvent { _, _ -> evict(list) }
+
+  /**
+   * saves the list committing after every [chunkSize] rows
+   * a row that can not be saved rolls back its chunk and throws, the chunks before it stay saved
+   *
+   * @param list
+   * @param chunkSize rows per transaction, zero or less saves the whole list in one transaction
+   * @return
+   */
+  override fun save(list: IdentifiableList<out T>, chunkSize: Int): Boolean =
+      try {
+        database.save(list, this, chunkSize)
+      } finally {
+        evict(list)
+      }
+
+  /**
+   * @param list
+   * @param chunkSize
+   * @return
+   */
+  override fun saveAsync(list: IdentifiableList<out T>, chunkSize: Int): Single<Boolean> =
+      reactiveDatabase.saveAsync(list, this, chunkSize).doOnEvent { _, _ -> evict(list) }
 
   /**
    * @param t
    * @return
    */
-  override fun update(t: T): Boolean = database.update(t, this)
+  override fun update(t: T): Boolean = database.update(t, this).also { evict(t) }
 
   /**
    * @param t
    * @return
    */
-  override fun updateAsync(t: T): Maybe<Boolean> = reactiveDatabase.updateAsync(t, this)
+  override fun updateAsync(t: T): Maybe<Boolean> = reactiveDatabase.updateAsync(t, this).doOnSuccess { evict(t) }
 
   /**
    * @param t
    * @param column
    * @return
    */
-  override fun update(t: T, column: Column<*>): Boolean = database.update(t, this, column)
+  override fun update(t: T, column: Column<*>): Boolean = database.update(t, this, column).also { evictAll() }
 
   /**
    * @param t
@@ -404,7 +539,7 @@ abstract class FastTable<T : Identifiable<Int>>
    * @return
    */
   override fun updateAsync(t: T, column: Column<*>): Maybe<Boolean> =
-      reactiveDatabase.updateAsync(t, this, column)
+      reactiveDatabase.updateAsync(t, this, column).doOnSuccess { evictAll() }
 
   /**
    *
@@ -416,12 +551,37 @@ abstract class FastTable<T : Identifiable<Int>>
    */
   override fun query(queryBuilder: QueryBuilder): Cursor = database.query(queryBuilder)
 
+  /**
+   * reads the rows of the query one at a time, the builder should select all the columns of this table
+   *
+   * @param queryBuilder the query
+   * @return a stream that must be closed if not read to the end
+   */
+  override fun stream(queryBuilder: QueryBuilder): EntityStream<out T> {
+    val cursor = query(queryBuilder)
+    return EntityStream(cursor, rowReader(cursor))
+  }
+
+  /**
+   * streams all the rows in this table
+   */
+  fun stream(): EntityStream<out T> = stream(queryBuilder())
+
   /**
    *
    */
   override fun queryAsync(queryBuilder: QueryBuilder): Single<Cursor> =
       reactiveDatabase.queryAsync(queryBuilder)
 
+  /**
+   * reads the rows of the query now and again after every committed write to this table
+   *
+   * @param queryBuilder the query, it should select all the columns of this table
+   * @return the rows, re-read when the table changes
+   */
+  override fun observe(queryBuilder: QueryBuilder): Flowable<IdentifiableList<out T>> =
+      reactiveDatabase.observe(this, queryBuilder)
+
   /**
    * @return
    */
@@ -430,7 +590,17 @@ abstract class FastTable<T : Identifiable<Int>>
   /**
    * @return
    */
-  override fun findById(idLong: Long): T? = database.find(this).where(id.with(idLong.toInt())).first()
+  override fun findById(idLong: Long): T? {
+    val cache = entityCache ?: return database.find(this).where(id.with(idLong.toInt())).first()
+    cache[idLong.toInt()]?.let { return it }
+    /*
+     * rows read inside a transaction may still roll back
+     */
+    val generation = cache.generation
+    val t = database.find(this).where(id.with(idLong.toInt())).first() ?: return null
+    if (!database.writableDatabase().inTransaction()) cache.put(t, generation)
+    return t
+  }
 
   /**
    * @return
@@ -467,29 +637,88 @@ abstract class FastTable<T : Identifiable<Int>>
   override fun findAllAsync(vararg column: Column<*>): Maybe<IdentifiableList<out T>> =
       reactiveDatabase.readAllAsync(this, *column)
 
+  /**
+   * reads all the rows of the query, the builder should select all the columns of this table
+   *
+   * @param queryBuilder the query
+   * @return the rows, from the query cache when it is enabled
+   */
+  override fun findAll(queryBuilder: QueryBuilder): IdentifiableList<out T> = database.findAll(this, queryBuilder)
+
+  /**
+   * query selecting the rows of this table together with the row each one references in the related table,
+   * through a LEFT JOIN of the foreign key on the related id, see [findAllJoined]
+   * criteria and orders added to the query must name their columns with [Projection.column] and the table
+   *
+   * @param foreignKey column of this table holding the id of the related row
+   * @param related the referenced table, it can not be this table
+   * @return the query
+   */
+  fun joinQuery(foreignKey: Column<*>, related: FastTable<*>): QueryBuilder =
+      JoinFetch.query(this, foreignKey, related)
+
+  /**
+   * reads the rows of a [joinQuery] in one pass, decoding both rows from each cursor row
+   *
+   * @param queryBuilder a query made by [joinQuery]
+   * @param related the table passed to [joinQuery]
+   * @param binder attaches the related row to the row of this table
+   * @return the rows of this table
+   */
+  fun <R : Identifiable<Int>> findAllJoined(queryBuilder: QueryBuilder,
+                                            related: FastTable<R>,
+                                            binder: JoinBinder<in T, in R>): IdentifiableList<out T> =
+      try {
+        JoinFetch.read(query(queryBuilder), this, related, binder)
+      } catch (e: SQLException) {
+        LogUtil.e(TAG, e)
+        IdentifiableList()
+      }
+
+  /**
+   * reads the rows whose column value is in the list, the list is split into
+   * IN (?, ...) chunks of at most [SQLITE_MAX_VARIABLE_NUMBER] values
+   *
+   * @param column
+   * @param list
+   * @param <N>
+   * @return the rows of all the chunks
+  </N> */
+  override fun <N> findAllIn(column: Column<N>, list: List<out N>): IdentifiableList<out T> {
+    val ts = IdentifiableList<T>()
+    var from = 0
+    while (from < list.size) {
+      val to = minOf(from + SQLITE_MAX_VARIABLE_NUMBER, list.size)
+      ts.addAll(findAll(queryBuilder().whereAnd(Criteria.`in`(column, Array<Any?>(to - from) { list[from + it] }))))
+      from = to
+    }
+    return ts
+  }
+
   /**
    * @param column
    * @return
    */
-  override fun delete(column: Column<*>): Boolean = database.delete(this, column)
+  override fun delete(column: Column<*>): Boolean = database.delete(this, column).also { evictAll() }
 
   /**
    * @param column
    * @return
    */
-  override fun deleteAsync(column: Column<*>): Maybe<Boolean> = reactiveDatabase.deleteAsync(this, column)
+  override fun deleteAsync(column: Column<*>): Maybe<Boolean> =
+      reactiveDatabase.deleteAsync(this, column).doOnSuccess { evictAll() }
 
   /**
    * @param t
    * @return
    */
-  override fun delete(t: T): Boolean = database.delete(this, t)
+  override fun delete(t: T): Boolean = database.delete(this, t).also { evict(t) }
 
   /**
    * @param t
    * @return
    */
-  override fun deleteAsync(t: T): Maybe<Boolean> = reactiveDatabase.deleteAsync(this, t)
+  override fun deleteAsync(t: T): Maybe<Boolean> = reactiveDatabase.deleteAsync(this, t).doOnSuccess { evict(t) }
 
   /**
    * @param column
@@ -498,7 +727,7 @@ abstract class FastTable<T : Identifiable<Int>>
    * @return
   </N> */
   override fun <N> delete(column: Column<N>, list: List<out N>): Boolean =
-      database.delete(this, column, list)
+      database.delete(this, column, list).also { evictAll() }
 
   /**
    * @param column
@@ -507,17 +736,37 @@ abstract class FastTable<T : Identifiable<Int>>
    * @return
   </C> */
   override fun <C> deleteAsync(column: Column<C>, list: List<out C>): Maybe<Boolean> =
-      reactiveDatabase.deleteAsync(this, column, list)
+      reactiveDatabase.deleteAsync(this, column, list).doOnSuccess { evictAll() }
+
+  /**
+   * deletes the rows whose column value is in the list, in chunks within one transaction
+   *
+   * @param column
+   * @param list
+   * @param <N>
+   * @return number of deleted rows
+  </N> */
+  override fun <N> deleteIn(column: Column<N>, list: List<out N>): Int =
+      database.deleteIn(this, column, list).also { evictAll() }
+
+  /**
+   * @param column
+   * @param list
+   * @param <C>
+   * @return number of deleted rows
+  </C> */
+  override fun <C> deleteInAsync(column: Column<C>, list: List<out C>): Single<Int> =
+      reactiveDatabase.deleteInAsync(this, column, list).doOnSuccess { evictAll() }
 
   /**
    * @return
    */
-  override fun clear(): Boolean = database.delete(this)
+  override fun clear(): Boolean = database.delete(this).also { evictAll() }
 
   /**
    * @return
    */
-  override fun clearAsync(): Maybe<Boolean> = reactiveDatabase.deleteAsync(this)
+  override fun clearAsync(): Maybe<Boolean> = reactiveDatabase.deleteAsync(this).doOnSuccess { evictAll() }
 
   /**
    * @return
@@ -534,16 +783,8 @@ abstract class FastTable<T : Identifiable<Int>>
   /**
    *
    */
-  override fun transact(block: FastTable<T>.() -> Unit) = synchronized(this) {
-    val db = database.writableDatabase
-    try {
-      db.beginTransaction()
-      block.invoke(this)
-      db.setTransactionSuccessful()
-    } finally {
-      db.endTransaction()
-    }
-  }
+  override fun transact(block: FastTable<T>.() -> Unit) =
+      database.transactionManager.inTransaction { block.invoke(this) }
 
   /**
    * drop this table from the database
@@ -560,6 +801,7 @@ abstract class FastTable<T : Identifiable<Int>>
     } catch (e: SQLException) {
       throw TableError(e)
     }
+    evictAll()
     return true
   }
 
@@ -568,6 +810,7 @@ abstract class FastTable<T : Identifiable<Int>>
    *
    * @param database readable database instance
    */
+  @Deprecated("loads every row into memory", ReplaceWith("rebuild(database)"))
   fun backup(database: SupportSQLiteDatabase) {
     backup = IdentifiableList()
     backup!!.addAll(accept(FetchAllVisitor(database, null)) as IdentifiableList<T>)
@@ -578,31 +821,82 @@ abstract class FastTable<T : Identifiable<Int>>
    *
    * @param database writable database
    */
+  @Deprecated("inserts every row again", ReplaceWith("rebuild(database)"))
   fun restore(database: SupportSQLiteDatabase) {
     if (backup != null && !backup!!.isEmpty()) {
-      accept(SaveListVisitor<T>(database, backup!!))
+      SaveStatementCache().use { accept(SaveListVisitor<T>(database, backup!!, it)) }
       backup!!.clear()
+      evictAll()
     }
     backup = null
   }
 
   /**
-   * gets a single from the cursor pre populated with id and timestamps
+   * indexes of the [columns] in the cursor, in the same order, passed to [deserialize] for every row of the cursor
    *
-   * @param cursor the serialized version of the instance
+   * @param cursor the cursor the rows are read from
+   * @return the index of each column, -1 for columns the cursor does not have
+   */
+  fun columnIndexes(cursor: Cursor): IntArray {
+    val columns = Conditions.checkNotNull(this.columns)
+    return IntArray(columns.size) { columns[it].getIndex(cursor) }
+  }
+
+  /**
+   * reads the row the cursor is on with indexes resolved by [columnIndexes],
+   * generated tables read their columns at the indexes, others ignore them
+   *
+   * @param e the cursor
+   * @param indexes the indexes of the columns in the cursor
    * @return instance from the cursor
    */
-  private fun getWithId(cursor: Cursor): T {
-    var t = deserialize(cursor)
-    t.setId(cursor.getInt(id.index))
-    if (t is ITimeStamped) {
-      val iTimeAware = t as ITimeStamped
-      iTimeAware.setCreatedAt(cursor.getInt(createdAt.getIndex(cursor)).toLong())
-      iTimeAware.setUpdatedAt(cursor.getInt(updatedAt.getIndex(cursor)).toLong())
-      t = iTimeAware as T
+  open fun deserialize(e: Cursor, indexes: IntArray): T = deserialize(e)
+
+  /**
+   * reads rows of the cursor pre populated with id and timestamps,
+   * the indexes of the columns are resolved once here and reused for every row
+   *
+   * @param cursor the cursor the rows are read from
+   * @return reads the row the cursor is on
+   */
+  internal fun rowReader(cursor: Cursor): (Cursor) -> T {
+    val idIndex = id.getIndex(cursor)
+    val createdAtIndex = createdAt.getIndex(cursor)
+    val updatedAtIndex = updatedAt.getIndex(cursor)
+    val indexes = columnIndexes(cursor)
+    return {
+      val t = deserialize(it, indexes)
+      t.setId(it.getInt(idIndex))
+      if (t is ITimeStamped) {
+        t.setCreatedAt(it.getLong(createdAtIndex))
+        t.setUpdatedAt(it.getLong(updatedAtIndex))
+      }
+      if (t is ActiveRecord<*>) (t as ActiveRecord<T>).table = this
+      t
     }
-    if (t is ActiveRecord<*>) (t as ActiveRecord<T>).table = this
-    return t
   }
 
-}
\ No newline at end of file
+}
+
+/**
+ * runs the block with foreign keys off so dropping a table does not delete the rows referencing it,
+ * the pragma is a no-op inside a transaction so it is left as it is there
+ */
+internal inline fun <T> SupportSQLiteDatabase.withoutForeignKeys(block: () -> T): T {
+  val toggled = !inTransaction() && query("PRAGMA foreign_keys").use { it.moveToFirst() && it.getInt(0) == 1 }
+  if (toggled) execSQL("PRAGMA foreign_keys = OFF")
+  try {
+    return block()
+  } finally {
+    if (toggled) execSQL("PRAGMA foreign_keys = ON")
+  }
+}
+
+/**
+ * @throws SQLException if a row references a row that does not exist
+ */
+internal fun SupportSQLiteDatabase.checkForeignKeys() {
+  query("PRAGMA foreign_key_check").use {
+    if (it.moveToFirst()) throw SQLException("row ${it.getLong(1)} of ${it.getString(0)} references a missing row of ${it.getString(2)}")
+  }
+}
@@ -13,7 +13,6 @@
 
 package promise.db
 
-import android.annotation.SuppressLint
 import android.content.ContentValues
 import android.database.Cursor
 import android.database.sqlite.SQLiteException
@@ -23,23 +22,28 @@ import promise.commons.model.Identifiable
 import promise.commons.util.DoubleConverter
 import promise.db.criteria.Criteria
 import promise.db.projection.Projection
-import promise.model.ITimeStamped
 import promise.model.IdentifiableList
 import promise.utils.Visitor
 
 internal class FetchLastIdVisitor(private val x: SupportSQLiteDatabase) : Visitor<TableCrud<*, in SupportSQLiteDatabase>, Int> {
   override fun visit(t: TableCrud<*, in SupportSQLiteDatabase>): Int {
-    val builder: QueryBuilder = t.queryBuilder().select(Projection.count(FastTable.id).`as`("num"))
-    @SuppressLint("Recycle") val cursor = x.query(builder.build(), builder.buildParameters())
-    return cursor.getInt(FastTable.id.index)
+    val builder: QueryBuilder = t.queryBuilder().select(Projection.count(FastTable.id))
+    return try {
+      x.simpleQueryForLong(builder.build(), null).toInt()
+    } catch (e: SQLiteException) {
+      LogUtil.e(t.TAG, e)
+      0
+    }
   }
 }
 
 internal class FetchAllVisitor<T : Identifiable<Int>>(private val x: SupportSQLiteDatabase,
-                                             private val columns: Array<out Column<*>>? = null) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, IdentifiableList<out T>> {
+                                             private val columns: Array<out Column<*>>? = null,
+                                             private val cache: QueryCache? = null,
+                                             private val queryBuilder: QueryBuilder? = null) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, IdentifiableList<out T>> {
 
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): IdentifiableList<out T> {
-    val builder: QueryBuilder = t.queryBuilder()
+    val builder: QueryBuilder = queryBuilder ?: t.queryBuilder()
     columns?.forEach {
       if (it.value() != null) builder.whereAnd(Criteria.equals(it, it.value()))
       if (it.order() != null) {
@@ -48,10 +52,13 @@ internal class FetchAllVisitor<T : Identifiable<Int>>(private val x: SupportSQLi
         } else builder.orderByAscending(it)
       }
     }
-    val cursor: Cursor
+    val sql = builder.build()
+    val params = builder.buildParameters()
+    val results = if (builder.isCacheBypassed) null else cache
+    results?.get<T>(sql, params)?.let { return it }
+    val generation = results?.generation ?: 0
     return try {
-      cursor = x.query(builder.build(), builder.buildParameters())
-      t.collection(cursor)
+      t.collection(x.query(sql, params)).also { results?.put(builder.buildTables(), sql, params, it, generation) }
     } catch (e: SQLiteException) {
       IdentifiableList()
     }
@@ -59,7 +66,8 @@ internal class FetchAllVisitor<T : Identifiable<Int>>(private val x: SupportSQLi
 }
 
 @Suppress("KDocUnresolvedReference")
-internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportSQLiteDatabase) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, TableCrud.Extras<T>> {
+internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportSQLiteDatabase,
+                                                         private val cache: QueryCache? = null) : Visitor<TableCrud<T, in SupportSQLiteDatabase>, TableCrud.Extras<T>> {
 
   override fun visit(t: TableCrud<T, in SupportSQLiteDatabase>): TableCrud.Extras<T> =
       object : QueryExtras<T>(x, t) {
@@ -85,77 +93,66 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
     fun database(): SupportSQLiteDatabase = database
 
     /**
-     * get a record pre populated with id and timestamps from each readAsync
+     * reads records pre populated with id and timestamps from the rows of the cursor
      *
-     * @param cursor serialized version of Q
-     * @return Q the de-serialized output of reading the cursor
+     * @param cursor the cursor the rows are read from
+     * @return reads the row the cursor is on
      */
-    fun getWithId(cursor: Cursor): Q {
-      var t = deserialize(cursor)
-      t.setId(cursor.getInt(FastTable.id.getIndex(cursor)))
-      if (t is ITimeStamped) {
-        val iTimeAware = t as ITimeStamped
-        iTimeAware.setCreatedAt(cursor.getInt(FastTable.createdAt.getIndex(cursor)).toLong())
-        iTimeAware.setUpdatedAt(cursor.getInt(FastTable.updatedAt.getIndex(cursor)).toLong())
-        t = iTimeAware as Q
-      }
-      if (t is ActiveRecord<*>) (t as ActiveRecord<T>).table = fastTable as FastTable<T>
-      return t
-    }
+    fun rowReader(cursor: Cursor): (Cursor) -> Q = (fastTable as FastTable<T>).rowReader(cursor) as (Cursor) -> Q
 
     /**
-     * get the first record in the table
+     * reads all the rows of the query, from the query cache when it holds them
      *
-     * @return the first records or null if theirs none in the table
+     * @param builder query on this table
+     * @return the rows or an empty list if the query fails
      */
-    override fun first(): Q? {
-      val cursor: Cursor
+    private fun fetch(builder: QueryBuilder): IdentifiableList<out Q> {
+      val sql = builder.build()
+      val params = builder.buildParameters()
+      val results = if (builder.isCacheBypassed) null else cache
+      results?.get<Q>(sql, params)?.let { return it }
+      val generation = results?.generation ?: 0
       return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().take(1)
-        cursor = database.query(builder.build(), builder.buildParameters())
-        cursor.moveToFirst()
-        getWithId(cursor)
+        val ts = IdentifiableList<Q>()
+        database.query(sql, params).use {
+          val read = rowReader(it)
+          while (it.moveToNext()) ts.add(read(it))
+        }
+        results?.put(builder.buildTables(), sql, params, ts, generation)
+        ts
       } catch (e: SQLiteException) {
         LogUtil.e(fastTable.TAG, e)
-        null
+        IdentifiableList()
       }
     }
 
+    override fun stream(vararg column: Column<*>): EntityStream<out Q> {
+      val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
+      for (column1 in column) if (column1.value() != null) builder.whereAnd(Criteria.equals(column1, column1.value()))
+      val cursor = database.query(builder.build(), builder.buildParameters())
+      return EntityStream(cursor, rowReader(cursor))
+    }
+
+    /**
+     * get the first record in the table
+     *
+     * @return the first records or null if theirs none in the table
+     */
+    override fun first(): Q? = fetch(fastTable.queryBuilder().take(1)).first()
+
     /**
      * get the last record in the table
      *
      * @return an item or null if theirs none stored in the table
      */
-    override fun last(): Q? {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().orderByDescending(FastTable.id).take(1)
-        cursor = database.query(builder.build(), builder.buildParameters())
-        cursor.moveToFirst()
-        getWithId(cursor)
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        null
-      }
-    }
+    override fun last(): Q? = fetch(fastTable.queryBuilder().orderByDescending(FastTable.id).take(1)).first()
 
     /**
      * get all the items in the table
      *
      * @return the items or an empty list if theirs none
      */
-    override fun all(): IdentifiableList<out Q> {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
-      } catch (e: SQLiteException) {
-        IdentifiableList()
-      }
-    }
+    override fun all(): IdentifiableList<out Q> = fetch(fastTable.queryBuilder().takeAll())
 
     /**
      * readAsync the top items in the table
@@ -163,19 +160,7 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @param limit the number of records to readAsync
      * @return a list of the items
      */
-    override fun limit(limit: Int): IdentifiableList<out Q> {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().take(limit)
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
-    }
+    override fun limit(limit: Int): IdentifiableList<out Q> = fetch(fastTable.queryBuilder().take(limit))
 
     /**
      * reads the records between the skip and limit in the table
@@ -184,31 +169,29 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @param limit items to load after skip
      * @return a list of records
      */
-    override fun paginate(skip: Int, limit: Int): IdentifiableList<out Q> {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().take(limit).skip(skip)
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
-    }
+    override fun paginate(skip: Int, limit: Int): IdentifiableList<out Q> =
+        fetch(fastTable.queryBuilder().take(limit).skip(skip))
 
-    override fun paginateDescending(skip: Int, limit: Int): IdentifiableList<out Q> {
-      val cursor: Cursor
+    override fun paginateDescending(skip: Int, limit: Int): IdentifiableList<out Q> =
+        fetch(fastTable.queryBuilder().orderByDescending(FastTable.id).take(limit).skip(skip))
+
+    override fun paginateAfter(after: PageToken?, limit: Int): Page<out Q> =
+        seek(FastTable.id, after, limit, false)
+
+    override fun paginateDescendingAfter(after: PageToken?, limit: Int): Page<out Q> =
+        seek(FastTable.id, after, limit, true)
+
+    override fun paginateAfter(column: Column<*>, after: PageToken?, limit: Int): Page<out Q> =
+        seek(column, after, limit, column.order() == Column.DESCENDING)
+
+    private fun seek(key: Column<*>, after: PageToken?, limit: Int, descending: Boolean): Page<out Q> {
       return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().orderByDescending(FastTable.id).take(limit).skip(skip)
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
+        val builder: QueryBuilder = KeysetPagination.query(fastTable.queryBuilder(), key, after, limit, descending)
+        val cursor = database.query(builder.build(), builder.buildParameters())
+        KeysetPagination.read(cursor, key, limit, rowReader(cursor))
       } catch (e: SQLiteException) {
         LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
+        Page(IdentifiableList(), null)
       }
     }
 
@@ -220,19 +203,8 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @param b      upper between bound
      * @return a list of items
      */
-    override fun between(column: Column<Number>, a: Number, b: Number): IdentifiableList<out Q> {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().takeAll().whereAnd(Criteria.between(column, a, b))
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
-    }
+    override fun between(column: Column<Number>, a: Number, b: Number): IdentifiableList<out Q> =
+        fetch(fastTable.queryBuilder().takeAll().whereAnd(Criteria.between(column, a, b)))
 
     /**
      * gets all items matching the multiple columns
@@ -241,18 +213,9 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @return a list of items
      */
     override fun where(vararg column: Column<*>): IdentifiableList<out Q> {
-      val cursor: Cursor
-      return try {
-        val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
-        for (column1 in column) if (column1.value() != null) builder.whereAnd(Criteria.equals(column1, column1.value()))
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) ts.add(getWithId(cursor))
-        ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
+      val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
+      for (column1 in column) if (column1.value() != null) builder.whereAnd(Criteria.equals(column1, column1.value()))
+      return fetch(builder)
     }
 
     /**
@@ -264,24 +227,9 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      */
     @SafeVarargs
     override fun notIn(column: Column<Number>, vararg bounds: Number): IdentifiableList<out Q> {
-      val cursor: Cursor
       val items = arrayOfNulls<Any>(bounds.size)
       System.arraycopy(bounds, 0, items, 0, bounds.size)
-      val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
-          .whereAnd(Criteria.notIn(column, items))
-      return try {
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) {
-          val t = getWithId(cursor)
-          ts.add(t)
-        }
-        cursor.close()
-        /*database.close();*/ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
+      return fetch(fastTable.queryBuilder().takeAll().whereAnd(Criteria.notIn(column, items)))
     }
 
     /**
@@ -291,22 +239,9 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @return a list of columns
      */
     override fun like(vararg column: Column<*>): IdentifiableList<out Q> {
-      val cursor: Cursor
       val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
       for (column1 in column) builder.whereAnd(Criteria.contains(column1, column1.value().toString()))
-      return try {
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) {
-          val t = getWithId(cursor)
-          ts.add(t)
-        }
-        cursor.close()
-        /*database.close();*/ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
+      return fetch(builder)
     }
 
     /**
@@ -316,24 +251,11 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @return a list of ordered items
      */
     override fun orderBy(column: Column<*>): IdentifiableList<out Q> {
-      val cursor: Cursor
       val builder: QueryBuilder = fastTable.queryBuilder().takeAll()
       if (column.order() == Column.DESCENDING) {
         builder.orderByDescending(column)
       } else builder.orderByAscending(column)
-      return try {
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) {
-          val t = getWithId(cursor)
-          ts.add(t)
-        }
-        cursor.close()
-        /*database.close();*/ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
+      return fetch(builder)
     }
 
     /**
@@ -342,23 +264,8 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @param column field to group by
      * @return a list of grouped items
      */
-    override fun groupBy(column: Column<*>): IdentifiableList<out Q> {
-      val cursor: Cursor
-      val builder: QueryBuilder = fastTable.queryBuilder().takeAll().groupBy(column)
-      return try {
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) {
-          val t = getWithId(cursor)
-          ts.add(t)
-        }
-        cursor.close()
-        /*database.close();*/ts
-      } catch (e: SQLiteException) {
-        LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
-      }
-    }
+    override fun groupBy(column: Column<*>): IdentifiableList<out Q> =
+        fetch(fastTable.queryBuilder().takeAll().groupBy(column))
 
     /**
      * gets all the items grouped and ordered by the two columns
@@ -368,24 +275,74 @@ internal class FetchExtrasVisitor<T : Identifiable<Int>>(private val x: SupportS
      * @return a list of items
      */
     override fun groupAndOrderBy(column: Column<*>, column1: Column<*>): IdentifiableList<out Q> {
-      val cursor: Cursor
       val builder: QueryBuilder = fastTable.queryBuilder().takeAll().groupBy(column)
       if (column1.order() == Column.DESCENDING) {
         builder.orderByDescending(column1)
       } else builder.orderByAscending(column1)
+      return fetch(builder)
+    }
+
+    override fun count(criteria: Criteria?): Long {
+      val builder: QueryBuilder = fastTable.queryBuilder().select(Projection.countRows())
+      if (criteria != null) builder.whereAnd(criteria)
       return try {
-        cursor = database.query(builder.build(), builder.buildParameters())
-        val ts = IdentifiableList<Q>()
-        while (cursor.moveToNext() && !cursor.isClosed) {
-          val t = getWithId(cursor)
-          ts.add(t)
+        database.simpleQueryForLong(builder.build(), criteria?.buildArguments())
+      } catch (e: SQLiteException) {
+        LogUtil.e(fastTable.TAG, e)
+        0
+      }
+    }
+
+    override fun exists(criteria: Criteria?): Boolean {
+      val builder: QueryBuilder = fastTable.queryBuilder().select(Projection.column(FastTable.id)).take(1)
+      if (criteria != null) builder.whereAnd(criteria)
+      return try {
+        database.simpleQueryForLong("SELECT EXISTS(${builder.build()})", criteria?.buildArguments()) == 1L
+      } catch (e: SQLiteException) {
+        LogUtil.e(fastTable.TAG, e)
+        false
+      }
+    }
+
+    override fun sum(column: Column<out Number>, criteria: Criteria?): Double? =
+        aggregate(Projection.sum(Projection.column(column)), criteria)
+
+    override fun avg(column: Column<out Number>, criteria: Criteria?): Double? =
+        aggregate(Projection.avg(Projection.column(column)), criteria)
+
+    override fun min(column: Column<out Number>, criteria: Criteria?): Double? =
+        aggregate(Projection.min(Projection.column(column)), criteria)
+
+    override fun max(column: Column<out Number>, criteria: Criteria?): Double? =
+        aggregate(Projection.max(Projection.column(column)), criteria)
+
+    /**
+     * reads the single value of an aggregate over the matching rows
+     */
+    private fun aggregate(projection: Projection, criteria: Criteria?): Double? {
+      val builder: QueryBuilder = fastTable.queryBuilder().select(projection)
+      if (criteria != null) builder.whereAnd(criteria)
+      return try {
+        database.query(builder.build(), criteria?.buildArguments() ?: emptyArray()).use {
+          if (it.moveToFirst() && !it.isNull(0)) it.getDouble(0) else null
         }
-        cursor.close()
-        /*database.close();*/ts
       } catch (e: SQLiteException) {
         LogUtil.e(fastTable.TAG, e)
-        IdentifiableList()
+        null
       }
     }
   }
+}
+
+/**
+ * runs a query returning a single number as a compiled statement, no cursor is created
+ */
+internal fun SupportSQLiteDatabase.simpleQueryForLong(sql: String, args: Array<out Any?>?): Long {
+  val statement = compileStatement(sql)
+  try {
+    args?.forEachIndexed { i, arg -> statement.bindValue(i + 1, arg) }
+    return statement.simpleQueryForLong()
+  } finally {
+    statement.close()
+  }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import promise.commons.data.log.LogUtil
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * tells observers which tables have been written to through the database
+ * writes made inside a transaction are reported once the outermost transaction ends,
+ * writes made with raw sql on [FastDatabase.writableDatabase] are not reported
+ */
+class InvalidationTracker internal constructor() {
+
+  /**
+   * receives the names of the tables that changed, called on the thread that made the write
+   */
+  interface Observer {
+    fun onInvalidated(tables: Set<String>)
+  }
+
+  private val observers = CopyOnWriteArraySet<Observer>()
+
+  fun addObserver(observer: Observer) {
+    observers.add(observer)
+  }
+
+  fun removeObserver(observer: Observer) {
+    observers.remove(observer)
+  }
+
+  internal fun notifyInvalidated(tables: Set<String>) {
+    if (tables.isEmpty()) return
+    observers.forEach {
+      try {
+        it.onInvalidated(tables)
+      } catch (e: Exception) {
+        LogUtil.e(TAG, e)
+      }
+    }
+  }
+
+  companion object {
+    private val TAG: String = LogUtil.makeTag(InvalidationTracker::class.java)
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.database.Cursor
+import android.database.CursorWrapper
+import promise.commons.model.Identifiable
+import promise.db.criteria.Criteria
+import promise.db.from.From
+import promise.db.projection.Projection
+import promise.model.IdentifiableList
+
+/**
+ * attaches the row read from the joined table to the row referencing it
+ * see [FastTable.findAllJoined]
+ */
+fun interface JoinBinder<T, R> {
+  fun bind(t: T, related: R)
+}
+
+/**
+ * builds and reads LEFT JOIN queries returning the rows of a table and the rows they reference in one pass,
+ * the columns of the referenced table are aliased with a prefix so both rows can be read from the same cursor
+ */
+internal object JoinFetch {
+
+  private const val RELATED_PREFIX = "__related_"
+
+  fun query(table: FastTable<*>, foreignKey: Column<*>, related: FastTable<*>): QueryBuilder {
+    if (table.name == related.name) throw IllegalArgumentException("${table.name} can not be joined to itself")
+    val projections = ArrayList<Projection>()
+    columns(table).forEach { projections.add(Projection.column(table, it).`as`(it.name)) }
+    columns(related).forEach { projections.add(Projection.column(related, it).`as`(RELATED_PREFIX + it.name)) }
+    return QueryBuilder()
+        .select(*projections.toTypedArray())
+        .from(From.table(table).leftJoin(related)
+            .on(Criteria.equals(Projection.column(table, foreignKey), Projection.column(related, FastTable.id))))
+  }
+
+  /**
+   * reads both rows of every cursor row and closes the cursor,
+   * the binder is not called for rows that do not reference any row of the related table
+   */
+  fun <T : Identifiable<Int>, R : Identifiable<Int>> read(
+      cursor: Cursor,
+      table: FastTable<T>,
+      related: FastTable<R>,
+      binder: JoinBinder<in T, in R>): IdentifiableList<out T> {
+    val ts = IdentifiableList<T>()
+    cursor.use {
+      val relatedCursor = PrefixedCursor(it, RELATED_PREFIX)
+      val relatedId = relatedCursor.getColumnIndex(FastTable.id.name)
+      val read = table.rowReader(it)
+      val readRelated = related.rowReader(relatedCursor)
+      while (it.moveToNext()) {
+        val t = read(it)
+        if (relatedId != -1 && !it.isNull(relatedId)) binder.bind(t, readRelated(relatedCursor))
+        ts.add(t)
+      }
+    }
+    return ts
+  }
+
+  private fun columns(table: FastTable<*>): List<Column<*>> =
+      listOf(FastTable.id) + table.columns + listOf(FastTable.createdAt, FastTable.updatedAt)
+
+  /**
+   * resolves column names with the prefix so a table deserializer reads its aliased columns
+   */
+  private class PrefixedCursor(cursor: Cursor, private val prefix: String) : CursorWrapper(cursor) {
+    override fun getColumnIndex(columnName: String): Int = super.getColumnIndex(prefix + columnName)
+
+    override fun getColumnIndexOrThrow(columnName: String): Int = super.getColumnIndexOrThrow(prefix + columnName)
+  }
+}
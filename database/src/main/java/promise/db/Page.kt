@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.database.Cursor
+import promise.commons.model.Identifiable
+import promise.db.criteria.Criteria
+import promise.model.IdentifiableList
+
+/**
+ * position after the last row of a keyset page, pass it back to read the following page
+ *
+ * @param lastKey sort key of the last row read, the id when paging by id
+ * @param lastId id of the last row read
+ */
+class PageToken internal constructor(val lastKey: Any?, val lastId: Int) {
+
+  override fun equals(other: Any?): Boolean =
+      other is PageToken && other.lastKey == lastKey && other.lastId == lastId
+
+  override fun hashCode(): Int = 31 * (lastKey?.hashCode() ?: 0) + lastId
+
+  override fun toString(): String = "PageToken(lastKey=$lastKey, lastId=$lastId)"
+}
+
+/**
+ * a page read by keyset pagination
+ *
+ * @param items rows of this page
+ * @param next token for the following page, null when this is the last page
+ */
+class Page<T : Identifiable<Int>>(val items: IdentifiableList<out T>, val next: PageToken?) {
+
+  /**
+   * @return true if there may be a following page
+   */
+  fun hasNext(): Boolean = next != null
+}
+
+/**
+ * builds keyset page queries, rows are ordered by the key and then the id so pages are stable
+ * the key column should not hold nulls, rows with a null key are skipped after the first page
+ */
+internal object KeysetPagination {
+
+  fun query(builder: QueryBuilder, key: Column<*>, after: PageToken?, limit: Int, descending: Boolean): QueryBuilder {
+    val byId = key.name == FastTable.id.name
+    if (after != null) {
+      val idCriteria = compare(FastTable.id, after.lastId, descending)
+      builder.whereAnd(if (byId) idCriteria
+      else compare(key, after.lastKey, descending)
+          .or(Criteria.equals(key, after.lastKey).and(idCriteria)))
+    }
+    if (descending) {
+      if (!byId) builder.orderByDescending(key)
+      builder.orderByDescending(FastTable.id)
+    } else {
+      if (!byId) builder.orderByAscending(key)
+      builder.orderByAscending(FastTable.id)
+    }
+    return builder.take(limit)
+  }
+
+  /**
+   * reads a page from the cursor and closes it
+   */
+  fun <T : Identifiable<Int>> read(cursor: Cursor, key: Column<*>, limit: Int, reader: (Cursor) -> T): Page<T> {
+    val items = IdentifiableList<T>()
+    var next: PageToken? = null
+    cursor.use {
+      while (it.moveToNext()) items.add(reader(it))
+      if (items.size == limit && it.moveToLast()) {
+        val id = it.getInt(FastTable.id.getIndex(it))
+        next = PageToken(if (key.name == FastTable.id.name) id else it.valueAt(it.getColumnIndex(key.name)), id)
+      }
+    }
+    return Page(items, next)
+  }
+
+  private fun compare(column: Column<*>, value: Any?, descending: Boolean): Criteria =
+      if (descending) Criteria.lesserThan(column, value) else Criteria.greaterThan(column, value)
+
+  private fun Cursor.valueAt(index: Int): Any? = when (getType(index)) {
+    Cursor.FIELD_TYPE_INTEGER -> getLong(index)
+    Cursor.FIELD_TYPE_FLOAT -> getDouble(index)
+    Cursor.FIELD_TYPE_STRING -> getString(index)
+    Cursor.FIELD_TYPE_BLOB -> getBlob(index)
+    else -> null
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import promise.database.PragmaPreset
+
+/**
+ * sqlite pragmas applied each time the database is opened, null values keep the sqlite default
+ * see [FastDatabaseOpenHelper.getEffectivePragmas] to read the values in use
+ *
+ * the pragmas are set on the primary connection, the one every write and transaction runs on,
+ * synchronous, journal size limit and busy timeout only matter there,
+ * with write ahead logging reads outside a transaction run on reader connections
+ * that keep the sqlite defaults for cache size, mmap size and temp store
+ *
+ * @param cacheSize pages kept in the page cache, or the size of the cache in KiB when negative
+ * @param mmapSize bytes of the file read through memory mapping, zero disables it
+ * @param journalSizeLimit bytes of the journal or wal file kept after a transaction or checkpoint
+ * @param busyTimeoutMillis time a connection waits for a lock held by another one before failing
+ */
+class PragmaProfile @JvmOverloads constructor(
+    val cacheSize: Int? = null,
+    val mmapSize: Long? = null,
+    val synchronous: Synchronous? = null,
+    val tempStore: TempStore? = null,
+    val journalSizeLimit: Long? = null,
+    val busyTimeoutMillis: Int? = null) {
+
+  enum class Synchronous {
+    OFF, NORMAL, FULL, EXTRA
+  }
+
+  enum class TempStore {
+    DEFAULT, FILE, MEMORY
+  }
+
+  /**
+   * the statements that apply this profile, the busy timeout first so the others wait for locks
+   */
+  fun statements(): List<String> {
+    val statements = ArrayList<String>()
+    busyTimeoutMillis?.let { statements.add("PRAGMA busy_timeout = $it") }
+    cacheSize?.let { statements.add("PRAGMA cache_size = $it") }
+    mmapSize?.let { statements.add("PRAGMA mmap_size = $it") }
+    synchronous?.let { statements.add("PRAGMA synchronous = ${it.name}") }
+    tempStore?.let { statements.add("PRAGMA temp_store = ${it.name}") }
+    journalSizeLimit?.let { statements.add("PRAGMA journal_size_limit = $it") }
+    return statements
+  }
+
+  override fun toString(): String =
+      "PragmaProfile(cacheSize=$cacheSize, mmapSize=$mmapSize, synchronous=$synchronous, " +
+          "tempStore=$tempStore, journalSizeLimit=$journalSizeLimit, busyTimeout=${busyTimeoutMillis}ms)"
+
+  companion object {
+    @JvmField
+    val THROUGHPUT = PragmaProfile(
+        cacheSize = -16384,
+        mmapSize = 64L * 1024 * 1024,
+        synchronous = Synchronous.NORMAL,
+        tempStore = TempStore.MEMORY,
+        journalSizeLimit = 64L * 1024 * 1024,
+        busyTimeoutMillis = 5000)
+
+    @JvmField
+    val DURABILITY = PragmaProfile(
+        synchronous = Synchronous.FULL,
+        tempStore = TempStore.FILE,
+        busyTimeoutMillis = 10000)
+
+    @JvmField
+    val LOW_MEMORY = PragmaProfile(
+        cacheSize = -512,
+        mmapSize = 0,
+        synchronous = Synchronous.NORMAL,
+        tempStore = TempStore.FILE,
+        journalSizeLimit = 4L * 1024 * 1024,
+        busyTimeoutMillis = 5000)
+
+    /**
+     * the profile of the preset, null for [PragmaPreset.NONE]
+     */
+    @JvmStatic
+    fun of(preset: PragmaPreset): PragmaProfile? = when (preset) {
+      PragmaPreset.NONE -> null
+      PragmaPreset.THROUGHPUT -> THROUGHPUT
+      PragmaPreset.DURABILITY -> DURABILITY
+      PragmaPreset.LOW_MEMORY -> LOW_MEMORY
+    }
+  }
+}
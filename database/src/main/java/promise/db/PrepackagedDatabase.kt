@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import promise.commons.AndroidPromise
+import promise.commons.data.log.LogUtil
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.channels.Channels
+import java.util.concurrent.Callable
+
+/**
+ * a prebuilt database file copied in place of a new database the first time it is opened,
+ * the copy keeps the version it was built with and is then upgraded by the usual migrations
+ * the file is synced to disk before it is renamed to the database so a crash never leaves a partial database
+ * see [FastDatabase.createDatabase]
+ */
+class PrepackagedDatabase private constructor(private val source: Callable<InputStream>) {
+
+  /**
+   * copies the file to the path of the database unless the database already exists,
+   * called before the first open of the database, see [FastDatabaseImpl.beforeOpen]
+   *
+   * @param name name of the database file
+   * @param version version of the database, the prebuilt file must not be newer
+   */
+  internal fun copyTo(name: String, version: Int) {
+    val context = AndroidPromise.instance().context()
+    val target = context.getDatabasePath(name)
+    if (target.exists()) return
+    target.parentFile?.mkdirs()
+    val copy = File(target.parentFile, "$name$COPY_SUFFIX")
+    try {
+      source.call().use { input ->
+        FileOutputStream(copy).channel.use { output ->
+          val channel = if (input is FileInputStream) input.channel else Channels.newChannel(input)
+          var position = 0L
+          while (true) {
+            val transferred = output.transferFrom(channel, position, TRANSFER_SIZE)
+            if (transferred <= 0) break
+            position += transferred
+          }
+          output.force(true)
+        }
+      }
+      val prebuiltVersion = readVersion(copy)
+      if (prebuiltVersion < 1 || prebuiltVersion > version)
+        throw IllegalStateException("prepackaged database has version $prebuiltVersion, expected 1 to $version")
+      if (!copy.renameTo(target)) throw IOException("could not move prepackaged database to ${target.path}")
+      LogUtil.d(TAG, "copied prepackaged database version $prebuiltVersion to ${target.path}")
+    } finally {
+      copy.delete()
+    }
+  }
+
+  /**
+   * reads the user version from the header of the file without opening it
+   */
+  private fun readVersion(file: File): Int = RandomAccessFile(file, "r").use {
+    if (it.length() < HEADER_SIZE) throw IllegalStateException("prepackaged database is not a sqlite database")
+    val magic = ByteArray(HEADER_MAGIC.size)
+    it.readFully(magic)
+    if (!magic.contentEquals(HEADER_MAGIC)) throw IllegalStateException("prepackaged database is not a sqlite database")
+    it.seek(USER_VERSION_OFFSET)
+    it.readInt()
+  }
+
+  companion object {
+    private val TAG: String = LogUtil.makeTag(PrepackagedDatabase::class.java)
+    private const val COPY_SUFFIX = "-prepackaged"
+    private const val TRANSFER_SIZE = 1L shl 20
+    private const val HEADER_SIZE = 100L
+    private const val USER_VERSION_OFFSET = 60L
+    private val HEADER_MAGIC = "SQLite format 3\u0000".toByteArray(Charsets.US_ASCII)
+
+    /**
+     * @param path path of the file in the assets of the app
+     */
+    @JvmStatic
+    fun fromAsset(path: String): PrepackagedDatabase =
+        PrepackagedDatabase(Callable { AndroidPromise.instance().context().assets.open(path) })
+
+    @JvmStatic
+    fun fromFile(file: File): PrepackagedDatabase = PrepackagedDatabase(Callable { FileInputStream(file) })
+
+    /**
+     * @param stream opens the stream, called once when the database is copied, the stream is closed after
+     */
+    @JvmStatic
+    fun fromInputStream(stream: Callable<InputStream>): PrepackagedDatabase = PrepackagedDatabase(stream)
+  }
+}
@@ -14,6 +14,8 @@
 package promise.db;
 
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import promise.commons.model.List;
 import promise.db.criteria.Criteria;
@@ -34,6 +36,7 @@ public class QueryBuilder {
 
   private List<QueryBuilder> unionQueries;
   private boolean unionAll;
+  private boolean cacheBypassed;
 
   public QueryBuilder() {
     projections = new List<>();
@@ -46,6 +49,7 @@ public class QueryBuilder {
     distinct = false;
     unionQueries = new List<>();
     unionAll = false;
+    cacheBypassed = false;
   }
 
   public QueryBuilder select(Column... columns) {
@@ -205,6 +209,15 @@ public class QueryBuilder {
     return this;
   }
 
+  public QueryBuilder bypassCache() {
+    this.cacheBypassed = true;
+    return this;
+  }
+
+  public boolean isCacheBypassed() {
+    return cacheBypassed;
+  }
+
   public QueryBuilder union(QueryBuilder query) {
     query.unionAll = false;
     unionQueries.add(query);
@@ -381,6 +394,22 @@ public class QueryBuilder {
     return result;
   }
 
+  /**
+   * the names of every table the query reads, including joined tables and sub queries
+   *
+   * @return table names
+   */
+  public Set<String> buildTables() {
+    Set<String> tables = new HashSet<>();
+    for (Projection p : projections) p.buildTables(tables);
+    if (from != null) from.buildTables(tables);
+    if (criteria != null) criteria.buildTables(tables);
+    for (Projection p : groupBy) p.buildTables(tables);
+    for (QueryBuilder union : unionQueries) tables.addAll(union.buildTables());
+    for (Order o : orderBy) o.buildTables(tables);
+    return tables;
+  }
+
   private void buildSelectClauseParameters(List<String> ret) {
     for (Projection p : projections) {
       ret.addAll(p.buildParameters());
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import android.util.LruCache
+import promise.commons.model.Identifiable
+import promise.model.IdentifiableList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * caches the rows returned by table reads, keyed by the sql and its parameters
+ * entries are dropped when any table they were read from is written to through the database,
+ * see [FastDatabase.enableQueryCache]
+ *
+ * @param maxRows maximum number of rows held across all entries, an empty result counts as one
+ */
+class QueryCache internal constructor(maxRows: Int) {
+
+  private class Entry(val tables: Set<String>, val rows: IdentifiableList<out Identifiable<Int>>)
+
+  private val entries = object : LruCache<String, Entry>(maxRows) {
+    override fun sizeOf(key: String, value: Entry): Int = maxOf(value.rows.size, 1)
+  }
+
+  private val invalidations = AtomicInteger()
+
+  /**
+   * taken before a read, the rows of the read are only kept if no table was written since
+   */
+  internal val generation: Int
+    get() = invalidations.get()
+
+  /**
+   * @return a copy of the cached rows or null if the query is not cached
+   */
+  internal fun <T : Identifiable<Int>> get(sql: String, params: Array<out Any?>?): IdentifiableList<out T>? {
+    val entry = entries.get(key(sql, params)) ?: return null
+    @Suppress("UNCHECKED_CAST")
+    return IdentifiableList(entry.rows as IdentifiableList<T>)
+  }
+
+  /**
+   * @param tables every table the query reads, see [QueryBuilder.buildTables]
+   * @param generation the generation taken before the query was read
+   */
+  @Synchronized
+  internal fun put(tables: Set<String>, sql: String, params: Array<out Any?>?,
+                   rows: IdentifiableList<out Identifiable<Int>>, generation: Int) {
+    if (generation != invalidations.get()) return
+    entries.put(key(sql, params), Entry(tables, IdentifiableList(rows)))
+  }
+
+  /**
+   * drops every entry read from the table
+   */
+  @Synchronized
+  internal fun invalidate(table: String) {
+    invalidations.incrementAndGet()
+    entries.snapshot().forEach { if (it.value.tables.contains(table)) entries.remove(it.key) }
+  }
+
+  @Synchronized
+  internal fun invalidateAll() {
+    invalidations.incrementAndGet()
+    entries.evictAll()
+  }
+
+  /**
+   * number of reads answered from the cache
+   */
+  val hitCount: Int
+    get() = entries.hitCount()
+
+  /**
+   * number of reads that went to the database
+   */
+  val missCount: Int
+    get() = entries.missCount()
+
+  /**
+   * number of entries dropped to stay within the maximum number of rows
+   */
+  val evictionCount: Int
+    get() = entries.evictionCount()
+
+  /**
+   * number of times entries were dropped because of a write
+   */
+  val invalidationCount: Int
+    get() = invalidations.get()
+
+  /**
+   * number of rows currently held
+   */
+  val size: Int
+    get() = entries.size()
+
+  override fun toString(): String =
+      "QueryCache(rows=$size, hits=$hitCount, misses=$missCount, evictions=$evictionCount, invalidations=$invalidationCount)"
+
+  private fun key(sql: String, params: Array<out Any?>?): String {
+    val builder = StringBuilder(sql)
+    params?.forEach { builder.append(SEPARATOR).append(it) }
+    return builder.toString()
+  }
+
+  companion object {
+    private const val SEPARATOR = '\u0000'
+  }
+}
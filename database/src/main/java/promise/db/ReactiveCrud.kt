@@ -13,6 +13,7 @@
 package promise.db
 
 import android.database.Cursor
+import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 import promise.commons.model.Identifiable
@@ -42,11 +43,21 @@ interface ReactiveCrud<X> : Crud<X> {
 
   fun <C> deleteAsync(tableCrud: TableCrud<*, in X>, column: Column<C>, list: List<out C>): Maybe<Boolean>
 
+  fun <C> deleteInAsync(tableCrud: TableCrud<*, in X>, column: Column<C>, list: List<out C>): Single<Int>
+
   fun <T : Identifiable<Int>> saveAsync(t: T, tableCrud: TableCrud<T, in X>): Single<Long>
 
   fun <T : Identifiable<Int>> saveAsync(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in X>): Single<Boolean>
 
+  fun <T : Identifiable<Int>> saveAsync(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in X>, chunkSize: Int): Single<Boolean>
+
   fun deleteAllAsync(): Maybe<Boolean>
 
   fun <T : Identifiable<Int>> getLastIdAsync(tableCrud: TableCrud<T, in X>): Maybe<Int>
+
+  fun tableChanges(vararg tableNames: String): Flowable<Set<String>>
+
+  fun <T : Identifiable<Int>> observe(tableCrud: TableCrud<T, in X>, queryBuilder: QueryBuilder): Flowable<IdentifiableList<out T>>
+
+  fun <T : Identifiable<Int>> observe(tableCrud: TableCrud<T, in X>, queryBuilder: QueryBuilder, throttleMillis: Long): Flowable<IdentifiableList<out T>>
 }
\ No newline at end of file
@@ -15,12 +15,17 @@ package promise.db
 import android.content.ContentValues
 import android.database.Cursor
 import androidx.sqlite.db.SupportSQLiteDatabase
+import io.reactivex.BackpressureStrategy
+import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 import promise.commons.model.Identifiable
 import promise.commons.model.List
 import promise.commons.util.DoubleConverter
+import promise.db.criteria.Criteria
 import promise.model.IdentifiableList
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
 
 class ReactiveFastDatabase constructor(
     name: String?,
@@ -30,7 +35,81 @@ class ReactiveFastDatabase constructor(
 
   internal constructor(version: Int) : this(DEFAULT_NAME, version)
 
-  override fun queryAsync(queryBuilder: QueryBuilder): Single<Cursor> = Single.fromCallable { query(queryBuilder) }
+  @Volatile
+  private var openSchedulers: DatabaseSchedulers? = null
+
+  /**
+   * threads the reactive calls run on, sized to the read connections the framework opens in wal mode
+   * the size comes from the wal setting so making them does not open the database on the calling thread,
+   * made again on first use after [close]
+   */
+  val schedulers: DatabaseSchedulers
+    get() = openSchedulers ?: synchronized(this) {
+      openSchedulers ?: DatabaseSchedulers(
+          if (isWriteAheadLoggingEnabled) DatabaseSchedulers.walReaders() else 1)
+          .also { openSchedulers = it }
+    }
+
+  /**
+   * the write behind queue, null if it is not enabled
+   */
+  @Volatile
+  var writeQueue: WriteQueue? = null
+    private set
+
+  /**
+   * queues [saveAsync], [updateAsync] and [deleteAsync] of single rows and commits them in batches,
+   * see [WriteQueue]
+   *
+   * @param maxBatchSize number of queued writes that triggers a commit
+   * @param maxDelayMillis longest time a write waits for its batch to fill
+   * @param capacity maximum number of queued writes
+   * @param overflow what happens to writes queued beyond the capacity
+   */
+  @JvmOverloads
+  fun enableWriteQueue(maxBatchSize: Int = 100,
+                       maxDelayMillis: Long = 10,
+                       capacity: Int = 10_000,
+                       overflow: WriteQueue.Overflow = WriteQueue.Overflow.ERROR) {
+    require(maxBatchSize > 0 && capacity >= maxBatchSize) { "capacity must be at least the batch size" }
+    writeQueue?.flush()
+    writeQueue = WriteQueue(this, maxBatchSize, maxDelayMillis, capacity, overflow)
+  }
+
+  /**
+   * commits the writes still queued and goes back to one transaction per write
+   */
+  fun disableWriteQueue() {
+    val queue = writeQueue ?: return
+    writeQueue = null
+    queue.flush()
+  }
+
+  /**
+   * commits the queued writes, stops the reactive threads once their work has run and closes the database
+   */
+  override fun close() {
+    disableWriteQueue()
+    synchronized(this) {
+      openSchedulers?.shutdown()
+      openSchedulers = null
+    }
+    super.close()
+  }
+
+  /**
+   * runs a read on the reader threads in the given lane
+   */
+  fun <R : Any> scheduleRead(priority: DatabaseSchedulers.Priority, callable: Callable<R>): Single<R> =
+      Single.fromCallable(callable).subscribeOn(schedulers.reader(priority))
+
+  /**
+   * runs a write on the writer thread in the given lane
+   */
+  fun <R : Any> scheduleWrite(priority: DatabaseSchedulers.Priority, callable: Callable<R>): Single<R> =
+      Single.fromCallable(callable).subscribeOn(schedulers.writer(priority))
+
+  override fun queryAsync(queryBuilder: QueryBuilder): Single<Cursor> = Single.fromCallable { query(queryBuilder) }.subscribeOn(schedulers.reader())
 
   @Throws(TableError::class)
   override fun <T : Identifiable<Int>> readAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>): ReactiveTable.Extras<T> =
@@ -40,36 +119,47 @@ class ReactiveFastDatabase constructor(
       }
 
   override fun <T : Identifiable<Int>> readAllAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Maybe<IdentifiableList<out T>> =
-      Maybe.fromCallable { findAll(tableCrud) }
+      Maybe.fromCallable { findAll(tableCrud) }.subscribeOn(schedulers.reader())
 
   override fun <T : Identifiable<Int>> readAllAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>, vararg column: Column<*>): Maybe<IdentifiableList<out T>> =
-      Maybe.fromCallable { findAll(tableCrud, *column) }
+      Maybe.fromCallable { findAll(tableCrud, *column) }.subscribeOn(schedulers.reader())
 
   override fun <T : Identifiable<Int>> updateAsync(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>, column: Column<*>): Maybe<Boolean> =
-      Maybe.fromCallable { update(t, tableCrud, column) }
+      Maybe.fromCallable { update(t, tableCrud, column) }.subscribeOn(schedulers.writer())
 
   override fun <T : Identifiable<Int>> updateAsync(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Maybe<Boolean> =
-      Maybe.fromCallable { update(t, tableCrud) }
+      writeQueue?.enqueue { update(t, tableCrud) }?.toMaybe()
+          ?: Maybe.fromCallable { update(t, tableCrud) }.subscribeOn(schedulers.writer())
 
   override fun <T : Identifiable<Int>> deleteAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>, column: Column<*>): Maybe<Boolean> =
-      Maybe.fromCallable { delete(tableCrud, column) }
+      Maybe.fromCallable { delete(tableCrud, column) }.subscribeOn(schedulers.writer())
 
   override fun <T : Identifiable<Int>> deleteAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>, t: T): Maybe<Boolean> =
-      Maybe.fromCallable { delete(tableCrud, t) }
+      writeQueue?.enqueue { delete(tableCrud, t) }?.toMaybe()
+          ?: Maybe.fromCallable { delete(tableCrud, t) }.subscribeOn(schedulers.writer())
 
   override fun deleteAsync(tableCrud: TableCrud<*, in SupportSQLiteDatabase>): Maybe<Boolean> =
-      Maybe.fromCallable { delete(tableCrud) }
+      Maybe.fromCallable { delete(tableCrud) }.subscribeOn(schedulers.writer())
 
   override fun <C> deleteAsync(tableCrud: TableCrud<*, in SupportSQLiteDatabase>,
                                column: Column<C>,
                                list: List<out C>): Maybe<Boolean> =
-      Maybe.fromCallable { delete(tableCrud, column, list) }
+      Maybe.fromCallable { delete(tableCrud, column, list) }.subscribeOn(schedulers.writer())
+
+  override fun <C> deleteInAsync(tableCrud: TableCrud<*, in SupportSQLiteDatabase>,
+                                 column: Column<C>,
+                                 list: List<out C>): Single<Int> =
+      Single.fromCallable { deleteIn(tableCrud, column, list) }.subscribeOn(schedulers.writer())
 
   override fun <T : Identifiable<Int>> saveAsync(t: T, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Single<Long> =
-      Single.fromCallable { save(t, tableCrud) }
+      writeQueue?.enqueue { save(t, tableCrud) }
+          ?: Single.fromCallable { save(t, tableCrud) }.subscribeOn(schedulers.writer())
 
   override fun <T : Identifiable<Int>> saveAsync(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Single<Boolean> =
-      Single.fromCallable { save(list, tableCrud) }
+      Single.fromCallable { save(list, tableCrud) }.subscribeOn(schedulers.writer())
+
+  override fun <T : Identifiable<Int>> saveAsync(list: IdentifiableList<out T>, tableCrud: TableCrud<T, in SupportSQLiteDatabase>, chunkSize: Int): Single<Boolean> =
+      Single.fromCallable { save(list, tableCrud, chunkSize) }.subscribeOn(schedulers.writer())
 
   override fun deleteAllAsync(): Maybe<Boolean> =
       Maybe.zip(tables().map { tableCrud: TableCrud<*, in SupportSQLiteDatabase> -> this.deleteAsync(tableCrud) }
@@ -80,49 +170,121 @@ class ReactiveFastDatabase constructor(
       }
 
   override fun <T : Identifiable<Int>> getLastIdAsync(tableCrud: TableCrud<T, in SupportSQLiteDatabase>): Maybe<Int> =
-      Maybe.fromCallable { getLastId(tableCrud) }
+      Maybe.fromCallable { getLastId(tableCrud) }.subscribeOn(schedulers.reader())
+
+  /**
+   * emits the names of the changed tables after every committed write to one of the tables
+   *
+   * @param tableNames tables to watch, none watches every table
+   */
+  override fun tableChanges(vararg tableNames: String): Flowable<Set<String>> =
+      Flowable.create({ emitter ->
+        val observer = object : InvalidationTracker.Observer {
+          override fun onInvalidated(tables: Set<String>) {
+            if (tableNames.isEmpty() || tables.any { it in tableNames }) emitter.onNext(tables)
+          }
+        }
+        invalidationTracker.addObserver(observer)
+        emitter.setCancellable { invalidationTracker.removeObserver(observer) }
+      }, BackpressureStrategy.LATEST)
+
+  override fun <T : Identifiable<Int>> observe(tableCrud: TableCrud<T, in SupportSQLiteDatabase>,
+                                               queryBuilder: QueryBuilder): Flowable<IdentifiableList<out T>> =
+      observe(tableCrud, queryBuilder, OBSERVE_THROTTLE_MILLIS)
+
+  /**
+   * runs the query on subscription and again after any table it reads changes,
+   * writes within the throttle window are coalesced into one re-run at the end of the window
+   * so a steady stream of writes still refreshes the results
+   *
+   * @param throttleMillis minimum time between two re-runs of the query
+   */
+  override fun <T : Identifiable<Int>> observe(tableCrud: TableCrud<T, in SupportSQLiteDatabase>,
+                                               queryBuilder: QueryBuilder,
+                                               throttleMillis: Long): Flowable<IdentifiableList<out T>> =
+      tableChanges(*(queryBuilder.buildTables() + tableCrud.name).toTypedArray())
+          .throttleLatest(throttleMillis, TimeUnit.MILLISECONDS, true)
+          .map { Unit }
+          .startWith(Unit)
+          .onBackpressureLatest()
+          .observeOn(schedulers.reader(), false, 1)
+          .map { findAll(tableCrud, queryBuilder) }
 
   private abstract inner class QueryExtras<T : Identifiable<Int>>
   internal constructor(private val tableCrud: TableCrud<T, in SupportSQLiteDatabase>) :
       ReactiveTable.Extras<T>, DoubleConverter<T, Cursor, ContentValues> {
 
-    override fun first(): Maybe<T> = Maybe.fromCallable { find(tableCrud).first() }
+    override fun first(): Maybe<T> = Maybe.fromCallable<T> { find(tableCrud).first() }.subscribeOn(schedulers.reader())
 
-    override fun last(): Maybe<T> = Maybe.fromCallable { find(tableCrud).last() }
+    override fun last(): Maybe<T> = Maybe.fromCallable<T> { find(tableCrud).last() }.subscribeOn(schedulers.reader())
 
     override fun all(): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).all() }
+        Maybe.fromCallable { find(tableCrud).all() }.subscribeOn(schedulers.reader())
 
     override fun limit(limit: Int): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).limit(limit) }
+        Maybe.fromCallable { find(tableCrud).limit(limit) }.subscribeOn(schedulers.reader())
 
     override fun paginate(skip: Int, limit: Int): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).paginate(skip, limit) }
+        Maybe.fromCallable { find(tableCrud).paginate(skip, limit) }.subscribeOn(schedulers.reader())
 
     override fun paginateDescending(skip: Int, limit: Int): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).paginateDescending(skip, limit) }
+        Maybe.fromCallable { find(tableCrud).paginateDescending(skip, limit) }.subscribeOn(schedulers.reader())
+
+    override fun paginateAfter(after: PageToken?, limit: Int): Maybe<Page<out T>> =
+        Maybe.fromCallable { find(tableCrud).paginateAfter(after, limit) }.subscribeOn(schedulers.reader())
+
+    override fun paginateDescendingAfter(after: PageToken?, limit: Int): Maybe<Page<out T>> =
+        Maybe.fromCallable { find(tableCrud).paginateDescendingAfter(after, limit) }.subscribeOn(schedulers.reader())
+
+    override fun paginateAfter(column: Column<*>, after: PageToken?, limit: Int): Maybe<Page<out T>> =
+        Maybe.fromCallable { find(tableCrud).paginateAfter(column, after, limit) }.subscribeOn(schedulers.reader())
 
     override fun between(column: Column<Number>, a: Number, b: Number): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).between(column, a, b) }
+        Maybe.fromCallable { find(tableCrud).between(column, a, b) }.subscribeOn(schedulers.reader())
 
     override fun where(vararg column: Column<*>): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).where(*column) }
+        Maybe.fromCallable { find(tableCrud).where(*column) }.subscribeOn(schedulers.reader())
 
     @SafeVarargs
     override fun notIn(column: Column<Number>, vararg bounds: Number): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).notIn(column, *bounds) }
+        Maybe.fromCallable { find(tableCrud).notIn(column, *bounds) }.subscribeOn(schedulers.reader())
 
     override fun like(vararg column: Column<String>): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).like(*column) }
+        Maybe.fromCallable { find(tableCrud).like(*column) }.subscribeOn(schedulers.reader())
 
     override fun orderBy(column: Column<*>): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).orderBy(column) }
+        Maybe.fromCallable { find(tableCrud).orderBy(column) }.subscribeOn(schedulers.reader())
 
     override fun groupBy(column: Column<*>): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).groupBy(column) }
+        Maybe.fromCallable { find(tableCrud).groupBy(column) }.subscribeOn(schedulers.reader())
 
     override fun groupAndOrderBy(column: Column<*>, column1: Column<*>): Maybe<IdentifiableList<out T>> =
-        Maybe.fromCallable { find(tableCrud).groupAndOrderBy(column, column1) }
+        Maybe.fromCallable { find(tableCrud).groupAndOrderBy(column, column1) }.subscribeOn(schedulers.reader())
+
+    override fun observeAll(): Flowable<IdentifiableList<out T>> =
+        observe(tableCrud, tableCrud.queryBuilder())
+
+    override fun count(criteria: Criteria?): Single<Long> =
+        Single.fromCallable { find(tableCrud).count(criteria) }.subscribeOn(schedulers.reader())
+
+    override fun exists(criteria: Criteria?): Single<Boolean> =
+        Single.fromCallable { find(tableCrud).exists(criteria) }.subscribeOn(schedulers.reader())
+
+    override fun sum(column: Column<out Number>, criteria: Criteria?): Maybe<Double> =
+        Maybe.fromCallable<Double> { find(tableCrud).sum(column, criteria) }.subscribeOn(schedulers.reader())
+
+    override fun avg(column: Column<out Number>, criteria: Criteria?): Maybe<Double> =
+        Maybe.fromCallable<Double> { find(tableCrud).avg(column, criteria) }.subscribeOn(schedulers.reader())
+
+    override fun min(column: Column<out Number>, criteria: Criteria?): Maybe<Double> =
+        Maybe.fromCallable<Double> { find(tableCrud).min(column, criteria) }.subscribeOn(schedulers.reader())
+
+    override fun max(column: Column<out Number>, criteria: Criteria?): Maybe<Double> =
+        Maybe.fromCallable<Double> { find(tableCrud).max(column, criteria) }.subscribeOn(schedulers.reader())
+  }
+
+  companion object {
+    private const val OBSERVE_THROTTLE_MILLIS = 50L
   }
 
 }
\ No newline at end of file
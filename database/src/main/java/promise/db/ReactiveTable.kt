@@ -12,8 +12,11 @@
  */
 package promise.db
 
+import io.reactivex.Flowable
 import io.reactivex.Maybe
+import io.reactivex.Single
 import promise.commons.model.Identifiable
+import promise.db.criteria.Criteria
 import promise.model.IdentifiableList
 
 /**
@@ -78,6 +81,28 @@ interface ReactiveTable {
      */
     fun paginateDescending(skip: Int, limit: Int): Maybe<IdentifiableList<out T>>
 
+    /**
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page in ascending id order
+     */
+    fun paginateAfter(after: PageToken?, limit: Int): Maybe<Page<out T>>
+
+    /**
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page in descending id order
+     */
+    fun paginateDescendingAfter(after: PageToken?, limit: Int): Maybe<Page<out T>>
+
+    /**
+     * @param column non null sort key
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page ordered by the column and then the id
+     */
+    fun paginateAfter(column: Column<*>, after: PageToken?, limit: Int): Maybe<Page<out T>>
+
     /**
      * gets data that matches between the values passed in the specified column
      * see [TableCrud.Extras.between]
@@ -145,5 +170,56 @@ interface ReactiveTable {
      * @return a list of data grouped and ordered in the given criteria
      */
     fun groupAndOrderBy(column: Column<*>, column1: Column<*>): Maybe<IdentifiableList<out T>>
+
+    /**
+     * emits all the rows in the table now and again after every committed write to it
+     *
+     * @return the rows, re-read when the table changes
+     */
+    fun observeAll(): Flowable<IdentifiableList<out T>>
+
+    /**
+     * see [TableCrud.Extras.count]
+     *
+     * @param criteria rows to count, null counts the whole table
+     * @return number of matching rows
+     */
+    fun count(criteria: Criteria? = null): Single<Long>
+
+    /**
+     * see [TableCrud.Extras.exists]
+     *
+     * @param criteria rows to look for, null checks if the table has any row
+     * @return true if at least one row matches
+     */
+    fun exists(criteria: Criteria? = null): Single<Boolean>
+
+    /**
+     * see [TableCrud.Extras.sum]
+     *
+     * @return the sum, empty if no row matches
+     */
+    fun sum(column: Column<out Number>, criteria: Criteria? = null): Maybe<Double>
+
+    /**
+     * see [TableCrud.Extras.avg]
+     *
+     * @return the average, empty if no row matches
+     */
+    fun avg(column: Column<out Number>, criteria: Criteria? = null): Maybe<Double>
+
+    /**
+     * see [TableCrud.Extras.min]
+     *
+     * @return the smallest value, empty if no row matches
+     */
+    fun min(column: Column<out Number>, criteria: Criteria? = null): Maybe<Double>
+
+    /**
+     * see [TableCrud.Extras.max]
+     *
+     * @return the largest value, empty if no row matches
+     */
+    fun max(column: Column<out Number>, criteria: Criteria? = null): Maybe<Double>
   }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import androidx.sqlite.db.SupportSQLiteStatement
+
+/**
+ * writes an instance straight into a compiled statement, skipping [android.content.ContentValues]
+ * generated tables implement this and saves prefer it over [TableCrud.serialize]
+ *
+ * @param <T> the type bound
+ */
+interface StatementBinder<T> {
+  /**
+   * @return names of the columns bound by [bind], in binding order, excluding the id and timestamps
+   */
+  val boundColumnNames: Array<String>
+
+  /**
+   * binds the columns of [t] to the positions 1 to [boundColumnNames] size of the statement
+   *
+   * @param statement compiled statement listing [boundColumnNames] first
+   * @param t instance to bind
+   */
+  fun bind(statement: SupportSQLiteStatement, t: T)
+}
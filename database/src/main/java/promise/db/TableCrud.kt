@@ -16,6 +16,7 @@ import android.content.ContentValues
 import android.database.Cursor
 import promise.commons.model.Identifiable
 import promise.commons.util.DoubleConverter
+import promise.db.criteria.Criteria
 import promise.model.IdentifiableList
 import promise.utils.Acceptor
 import promise.utils.Visitor
@@ -93,6 +94,34 @@ interface TableCrud<T : Identifiable<Int>, X> : DoubleConverter<T, Cursor, Conte
      */
     fun paginateDescending(skip: Int, limit: Int): IdentifiableList<out T>
 
+    /**
+     * reads the page after the token in ascending id order, each page costs the same
+     * regardless of how deep it is
+     *
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page and the token for the next one
+     */
+    fun paginateAfter(after: PageToken?, limit: Int): Page<out T>
+
+    /**
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page in descending id order
+     */
+    fun paginateDescendingAfter(after: PageToken?, limit: Int): Page<out T>
+
+    /**
+     * reads the page after the token ordered by the column and then the id,
+     * descending if the column is [Column.descending]
+     *
+     * @param column non null sort key
+     * @param after token of the previous page, null for the first page
+     * @param limit rows per page
+     * @return the page and the token for the next one
+     */
+    fun paginateAfter(column: Column<*>, after: PageToken?, limit: Int): Page<out T>
+
     /**
      * @param column
      * @param a
@@ -138,5 +167,55 @@ interface TableCrud<T : Identifiable<Int>, X> : DoubleConverter<T, Cursor, Conte
      * @return
      */
     fun groupAndOrderBy(column: Column<*>, column1: Column<*>): IdentifiableList<out T>
+
+    /**
+     * streams the rows matching the columns one at a time instead of loading them all
+     *
+     * @param column fields to match their values, none streams the whole table
+     * @return a stream that must be closed if not read to the end
+     */
+    fun stream(vararg column: Column<*>): EntityStream<out T>
+
+    /**
+     * counts the rows without reading them
+     *
+     * @param criteria rows to count, null counts the whole table
+     * @return number of matching rows
+     */
+    fun count(criteria: Criteria? = null): Long
+
+    /**
+     * @param criteria rows to look for, null checks if the table has any row
+     * @return true if at least one row matches
+     */
+    fun exists(criteria: Criteria? = null): Boolean
+
+    /**
+     * @param column numeric column to add up
+     * @param criteria rows to include, null for the whole table
+     * @return the sum or null if no row matches
+     */
+    fun sum(column: Column<out Number>, criteria: Criteria? = null): Double?
+
+    /**
+     * @param column numeric column to average
+     * @param criteria rows to include, null for the whole table
+     * @return the average or null if no row matches
+     */
+    fun avg(column: Column<out Number>, criteria: Criteria? = null): Double?
+
+    /**
+     * @param column numeric column
+     * @param criteria rows to include, null for the whole table
+     * @return the smallest value or null if no row matches
+     */
+    fun min(column: Column<out Number>, criteria: Criteria? = null): Double?
+
+    /**
+     * @param column numeric column
+     * @param criteria rows to include, null for the whole table
+     * @return the largest value or null if no row matches
+     */
+    fun max(column: Column<out Number>, criteria: Criteria? = null): Double?
   }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * runs the transactions of a database, one writer at a time
+ * the outermost block on a thread begins a transaction, blocks nested in it run in savepoints
+ * so a failing nested block only rolls back its own writes
+ * writes made through the database outside a block wait for the running transaction to end
+ * see [FastDatabase.transactionManager]
+ *
+ * @param onEnd called after the outermost transaction ends, with true if it was committed
+ */
+class TransactionManager internal constructor(
+    private val database: () -> SupportSQLiteDatabase,
+    private val onEnd: (Boolean) -> Unit) {
+
+  /**
+   * how the outermost transaction takes the database lock
+   */
+  enum class Mode {
+    /**
+     * would take the lock on the first write, begins like [IMMEDIATE]
+     * the framework has no deferred begin and turns a BEGIN run through execSQL into an exclusive one
+     */
+    DEFERRED,
+    /**
+     * takes the write lock when the transaction begins, readers continue until the commit
+     */
+    IMMEDIATE,
+    /**
+     * takes the write lock when the transaction begins and, without write ahead logging, keeps readers out
+     */
+    EXCLUSIVE
+  }
+
+  private val lock = ReentrantLock()
+
+  private var depth = 0
+
+  private val transactions = AtomicInteger()
+  private val rollbacks = AtomicInteger()
+  private val savepoints = AtomicInteger()
+  private val totalMillis = AtomicLong()
+  private val maxMillis = AtomicLong()
+  private val lastMillis = AtomicLong()
+  private val lockWaitMillis = AtomicLong()
+
+  /**
+   * runs the callable in a transaction, or in a savepoint of the running one, and returns its result
+   * the writes of the callable are rolled back if it throws
+   *
+   * @param mode how the outermost transaction begins, ignored for nested blocks
+   */
+  @JvmOverloads
+  fun <R> runInTransaction(mode: Mode = Mode.IMMEDIATE, callable: Callable<R>): R =
+      inTransaction(mode) { callable.call() }
+
+  /**
+   * true if the calling thread is inside a transaction block
+   */
+  val isInTransaction: Boolean
+    get() = lock.isHeldByCurrentThread && depth > 0
+
+  internal fun <R> inTransaction(mode: Mode = Mode.IMMEDIATE, block: () -> R): R {
+    acquire()
+    try {
+      return if (depth == 0) outermost(mode, block) else nested(block)
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  /**
+   * holds the writer lock for a single write, a write made inside a block joins its transaction
+   */
+  internal fun <R> withWriteLock(block: () -> R): R {
+    acquire()
+    try {
+      return block()
+    } finally {
+      lock.unlock()
+    }
+  }
+
+  private fun acquire() {
+    if (lock.tryLock()) return
+    val start = System.currentTimeMillis()
+    lock.lock()
+    lockWaitMillis.addAndGet(System.currentTimeMillis() - start)
+  }
+
+  private fun <R> outermost(mode: Mode, block: () -> R): R {
+    val db = database()
+    val start = System.currentTimeMillis()
+    if (mode == Mode.EXCLUSIVE) db.beginTransaction() else db.beginTransactionNonExclusive()
+    depth = 1
+    var committed = false
+    try {
+      val result = block()
+      db.setTransactionSuccessful()
+      committed = true
+      return result
+    } finally {
+      depth = 0
+      try {
+        db.endTransaction()
+      } finally {
+        record(System.currentTimeMillis() - start, committed)
+        onEnd(committed)
+      }
+    }
+  }
+
+  private fun <R> nested(block: () -> R): R {
+    val db = database()
+    val savepoint = SAVEPOINT_PREFIX + depth
+    db.execSQL("SAVEPOINT $savepoint")
+    savepoints.incrementAndGet()
+    depth++
+    try {
+      val result = block()
+      db.execSQL("RELEASE $savepoint")
+      return result
+    } catch (e: Throwable) {
+      /*
+       * the framework's statement classifier reads the first letters of a statement and ends its own
+       * transaction on one starting with ROLLBACK, the leading comment makes it classify this as a plain
+       * statement so sqlite only rolls back to the savepoint
+       */
+      db.execSQL("/* $savepoint */ ROLLBACK TO $savepoint")
+      db.execSQL("RELEASE $savepoint")
+      rollbacks.incrementAndGet()
+      throw e
+    } finally {
+      depth--
+    }
+  }
+
+  private fun record(millis: Long, committed: Boolean) {
+    transactions.incrementAndGet()
+    if (!committed) rollbacks.incrementAndGet()
+    totalMillis.addAndGet(millis)
+    lastMillis.set(millis)
+    var max = maxMillis.get()
+    while (millis > max && !maxMillis.compareAndSet(max, millis)) max = maxMillis.get()
+  }
+
+  /**
+   * number of outermost transactions that ended
+   */
+  val transactionCount: Int
+    get() = transactions.get()
+
+  /**
+   * number of transactions and savepoints that were rolled back
+   */
+  val rollbackCount: Int
+    get() = rollbacks.get()
+
+  /**
+   * number of nested blocks run in savepoints
+   */
+  val savepointCount: Int
+    get() = savepoints.get()
+
+  /**
+   * time spent inside outermost transactions
+   */
+  val totalDurationMillis: Long
+    get() = totalMillis.get()
+
+  val maxDurationMillis: Long
+    get() = maxMillis.get()
+
+  val lastDurationMillis: Long
+    get() = lastMillis.get()
+
+  /**
+   * time spent waiting for another thread to release the writer lock
+   */
+  val lockWaitDurationMillis: Long
+    get() = lockWaitMillis.get()
+
+  override fun toString(): String =
+      "TransactionManager(transactions=$transactionCount, rollbacks=$rollbackCount, savepoints=$savepointCount, " +
+          "total=${totalDurationMillis}ms, max=${maxDurationMillis}ms, last=${lastDurationMillis}ms, lockWait=${lockWaitDurationMillis}ms)"
+
+  companion object {
+    private const val SAVEPOINT_PREFIX = "sp_"
+  }
+}
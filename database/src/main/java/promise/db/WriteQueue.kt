@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017, Peter Vincent
+ * Licensed under the Apache License, Version 2.0, Android Promise.
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package promise.db
+
+import io.reactivex.Single
+import io.reactivex.SingleEmitter
+import io.reactivex.schedulers.Schedulers
+import promise.commons.data.log.LogUtil
+import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * write behind queue of [ReactiveFastDatabase], queued writes are committed together in one transaction
+ * once [maxBatchSize] writes are waiting or [maxDelayMillis] after the first of them was queued
+ * every write runs in its own savepoint so a failing write does not undo the others,
+ * and the single of every write completes with its own result once the batch is committed
+ * if the batch itself can not be committed every write runs again in its own transaction
+ * see [ReactiveFastDatabase.enableWriteQueue]
+ *
+ * @param capacity maximum number of queued writes, see [Overflow]
+ */
+class WriteQueue internal constructor(
+    private val database: ReactiveFastDatabase,
+    val maxBatchSize: Int,
+    val maxDelayMillis: Long,
+    val capacity: Int,
+    val overflow: Overflow) {
+
+  /**
+   * what happens to a write queued while [capacity] writes are already waiting
+   */
+  enum class Overflow {
+    /**
+     * the write waits for the next batch to be taken, on an io thread rather than the subscribing one
+     */
+    BLOCK,
+    /**
+     * the write fails with an [IllegalStateException]
+     */
+    ERROR
+  }
+
+  private class Write(val block: () -> Any, val emitter: SingleEmitter<Any>)
+
+  private val lock = ReentrantLock()
+
+  /**
+   * held from taking a batch until it is committed so batches commit in the order they were queued
+   */
+  private val commitLock = ReentrantLock()
+  private val notFull = lock.newCondition()
+  private val pending = ArrayDeque<Write>()
+  private var flushScheduled = false
+
+  private val batches = AtomicInteger()
+  private val writes = AtomicInteger()
+  private val failures = AtomicInteger()
+  private val largestBatch = AtomicInteger()
+
+  /**
+   * queues the write, it runs on the writer thread once its batch is flushed
+   */
+  fun <R : Any> enqueue(block: () -> R): Single<R> {
+    val single = queue(block)
+    /*
+     * waiting for room on the subscribing thread would freeze the main thread or deadlock the writer
+     */
+    return if (overflow == Overflow.BLOCK) single.subscribeOn(Schedulers.io()) else single
+  }
+
+  @Suppress("UNCHECKED_CAST")
+  private fun <R : Any> queue(block: () -> R): Single<R> = Single.create<Any> { emitter ->
+    val write = Write(block, emitter)
+    val flushNow: Boolean
+    lock.withLock {
+      while (pending.size >= capacity) {
+        if (overflow == Overflow.ERROR) {
+          emitter.onError(IllegalStateException("write queue is full, $capacity writes are waiting"))
+          return@create
+        }
+        notFull.await()
+      }
+      pending.add(write)
+      flushNow = pending.size >= maxBatchSize
+      if (!flushNow && flushScheduled) return@create
+      flushScheduled = true
+    }
+    if (flushNow) database.schedulers.writer().scheduleDirect { flush() }
+    else database.schedulers.writer().scheduleDirect({ flush() }, maxDelayMillis, TimeUnit.MILLISECONDS)
+  } as Single<R>
+
+  /**
+   * commits every queued write now, on the calling thread,
+   * waits for a batch the writer thread is committing so writes keep their order
+   * must not be called inside a transaction
+   */
+  fun flush() {
+    commitLock.withLock {
+      while (true) {
+        val batch = lock.withLock {
+          val batch = ArrayList<Write>(minOf(pending.size, maxBatchSize))
+          while (batch.size < maxBatchSize && pending.isNotEmpty()) batch.add(pending.poll()!!)
+          if (pending.isEmpty()) flushScheduled = false
+          notFull.signalAll()
+          batch
+        }
+        if (batch.isEmpty()) return
+        commit(batch)
+      }
+    }
+  }
+
+  private fun commit(batch: List<Write>) {
+    val results = arrayOfNulls<Any>(batch.size)
+    val errors = arrayOfNulls<Throwable>(batch.size)
+    try {
+      database.transactionManager.inTransaction {
+        batch.forEachIndexed { i, write ->
+          try {
+            results[i] = database.transactionManager.inTransaction { write.block() }
+          } catch (e: Exception) {
+            errors[i] = e
+          }
+        }
+      }
+    } catch (e: Exception) {
+      LogUtil.e(TAG, e)
+      errors.fill(null)
+      batch.forEachIndexed { i, write ->
+        try {
+          results[i] = database.transactionManager.inTransaction { write.block() }
+        } catch (e: Exception) {
+          errors[i] = e
+        }
+      }
+    }
+    batches.incrementAndGet()
+    writes.addAndGet(batch.size)
+    var max = largestBatch.get()
+    while (batch.size > max && !largestBatch.compareAndSet(max, batch.size)) max = largestBatch.get()
+    batch.forEachIndexed { i, write ->
+      val error = errors[i]
+      if (error != null) {
+        failures.incrementAndGet()
+        write.emitter.onError(error)
+      } else write.emitter.onSuccess(results[i]!!)
+    }
+  }
+
+  /**
+   * number of writes waiting for the next batch
+   */
+  val size: Int
+    get() = lock.withLock { pending.size }
+
+  /**
+   * number of committed batches
+   */
+  val batchCount: Int
+    get() = batches.get()
+
+  /**
+   * number of writes run through the queue
+   */
+  val writeCount: Int
+    get() = writes.get()
+
+  /**
+   * number of writes that failed
+   */
+  val failureCount: Int
+    get() = failures.get()
+
+  val largestBatchSize: Int
+    get() = largestBatch.get()
+
+  override fun toString(): String =
+      "WriteQueue(queued=$size, batches=$batchCount, writes=$writeCount, failures=$failureCount, largestBatch=$largestBatchSize)"
+
+  companion object {
+    private val TAG: String = LogUtil.makeTag(WriteQueue::class.java)
+  }
+}
@@ -15,6 +15,8 @@ package promise.db.criteria;
 
 import promise.commons.model.List;
 
+import java.util.Set;
+
 public class AndCriteria extends Criteria {
   private Criteria left;
   private Criteria right;
@@ -35,6 +37,12 @@ public class AndCriteria extends Criteria {
     return "(" + ret.trim() + ")";
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (left != null) left.buildTables(tables);
+    if (right != null) right.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<String> ret = new List<>();
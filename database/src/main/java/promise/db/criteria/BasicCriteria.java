@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.projection.AliasedProjection;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public class BasicCriteria extends Criteria {
   private Projection projection;
   private String operator;
@@ -65,17 +67,34 @@ public class BasicCriteria extends Criteria {
     return sb.toString();
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+    if (value instanceof Projection) ((Projection) value).buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<String> ret = new List<>();
 
     if (projection != null) ret.addAll(projection.buildParameters());
 
-    if (value != null) ret.add(String.valueOf(value));
+    if (value != null && !(value instanceof Projection)) ret.add(String.valueOf(value));
 
     return ret;
   }
 
+  @Override
+  public Object[] buildArguments() {
+    List<Object> ret = new List<>();
+
+    if (projection != null) ret.addAll(projection.buildParameters());
+
+    if (value != null && !(value instanceof Projection)) ret.add(value);
+
+    return ret.toArray();
+  }
+
   public static class Operators {
     public static final String IS_NULL = "IS NULL";
     public static final String IS_NOT_NULL = "IS NOT NULL";
@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.projection.AliasedProjection;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public class BetweenCriteria extends Criteria {
   private Projection projection;
   private Object valueStart;
@@ -45,6 +47,11 @@ public class BetweenCriteria extends Criteria {
     return sb.toString();
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<String> ret = new List<>();
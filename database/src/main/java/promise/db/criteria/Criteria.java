@@ -18,6 +18,8 @@ import promise.db.Column;
 import promise.db.QueryBuilder;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public abstract class Criteria {
   // Null
   public static Criteria isNull(Column column) {
@@ -204,6 +206,23 @@ public abstract class Criteria {
 
   public abstract List<String> buildParameters();
 
+  /**
+   * adds the names of the tables this criteria reads from
+   *
+   * @param tables the names read so far
+   */
+  public void buildTables(Set<String> tables) {
+  }
+
+  /**
+   * the parameters of this criteria in their original types, for binding without converting to text
+   *
+   * @return bind arguments in the order of the placeholders in {@link #build()}
+   */
+  public Object[] buildArguments() {
+    return buildParameters().toArray();
+  }
+
   public AndCriteria and(Criteria criteria) {
     return new AndCriteria(this, criteria);
   }
@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.QueryBuilder;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class ExistsCriteria extends Criteria {
   private QueryBuilder subQuery;
 
@@ -34,6 +36,11 @@ public class ExistsCriteria extends Criteria {
     return ret;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (subQuery != null) tables.addAll(subQuery.buildTables());
+  }
+
   @Override
   public List<String> buildParameters() {
     if (subQuery != null) return List.fromArray(subQuery.buildParameters());
@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.projection.AliasedProjection;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public class InCriteria extends Criteria {
   private Projection projection;
   private List<Object> valuesList;
@@ -70,6 +72,11 @@ public class InCriteria extends Criteria {
     return sb.toString();
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<String> ret = new List<>();
@@ -87,4 +94,22 @@ public class InCriteria extends Criteria {
 
     return ret;
   }
+
+  @Override
+  public Object[] buildArguments() {
+    List<Object> ret = new List<>();
+
+    if (projection != null) ret.addAll(projection.buildParameters());
+
+    if (valuesList != null)
+      for (int i = 0; i < valuesList.size(); i++) {
+        if (valuesList.get(i) != null) ret.add(valuesList.get(i));
+      }
+    else
+      for (Object aValuesArray : valuesArray) {
+        if (aValuesArray != null) ret.add(aValuesArray);
+      }
+
+    return ret.toArray();
+  }
 }
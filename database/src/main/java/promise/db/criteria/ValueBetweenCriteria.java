@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.projection.AliasedProjection;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public class ValueBetweenCriteria extends Criteria {
   private Object value;
   private Projection projectionStart;
@@ -47,6 +49,12 @@ public class ValueBetweenCriteria extends Criteria {
     return sb.toString();
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projectionStart != null) projectionStart.buildTables(tables);
+    if (projectionEnd != null) projectionEnd.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<Object> ret = new List<Object>();
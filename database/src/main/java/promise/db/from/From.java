@@ -20,6 +20,8 @@ import promise.db.TableCrud;
 import promise.db.criteria.Criteria;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public abstract class From {
   public static TableFrom table(TableCrud table) {
     return new TableFrom(table);
@@ -57,6 +59,13 @@ public abstract class From {
 
   public abstract List<String> buildParameters();
 
+  /**
+   * adds the names of the tables this from clause reads
+   *
+   * @param tables the names read so far
+   */
+  public abstract void buildTables(Set<String> tables);
+
   public static class PartialJoin {
     private String joinType;
     private From left;
@@ -18,6 +18,8 @@ import promise.db.Column;
 import promise.db.criteria.Criteria;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public class JoinFrom extends From {
   private From left;
   private From right;
@@ -58,6 +60,13 @@ public class JoinFrom extends From {
     return "(" + leftSide + " " + joinType + " " + rightSide + " ON " + joinCriteria + ")";
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (left != null) left.buildTables(tables);
+    if (right != null) right.buildTables(tables);
+    if (criteria != null) criteria.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     List<Object> ret = new List<Object>();
@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.QueryBuilder;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class SubQueryFrom extends AliasableFrom<SubQueryFrom> {
   private QueryBuilder subQuery;
 
@@ -33,6 +35,11 @@ public class SubQueryFrom extends AliasableFrom<SubQueryFrom> {
     return ret;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (subQuery != null) tables.addAll(subQuery.buildTables());
+  }
+
   @Override
   public List<String> buildParameters() {
     if (subQuery != null) return List.fromArray(subQuery.buildParameters());
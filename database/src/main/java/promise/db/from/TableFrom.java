@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.TableCrud;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class TableFrom extends AliasableFrom<TableFrom> {
   private TableCrud table;
 
@@ -33,6 +35,11 @@ public class TableFrom extends AliasableFrom<TableFrom> {
     return ret;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (!Utils.isNullOrWhiteSpace(table.getName())) tables.add(table.getName());
+  }
+
   @Override
   public List<String> buildParameters() {
     return Utils.EMPTY_LIST.map(
@@ -18,6 +18,8 @@ import promise.db.Column;
 import promise.db.projection.AliasedProjection;
 import promise.db.projection.Projection;
 
+import java.util.Set;
+
 public abstract class Order {
   protected Projection projection;
 
@@ -63,4 +65,8 @@ public abstract class Order {
   public abstract String build();
 
   public abstract List<String> buildParameters();
+
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
 }
@@ -16,6 +16,8 @@ package promise.db.projection;
 import promise.commons.model.List;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class AggregateProjection extends Projection {
   private Projection projection;
   private int type;
@@ -37,6 +39,11 @@ public class AggregateProjection extends Projection {
     else return ret;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     if (projection != null) return projection.buildParameters();
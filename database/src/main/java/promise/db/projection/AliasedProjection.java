@@ -16,6 +16,8 @@ package promise.db.projection;
 import promise.commons.model.List;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class AliasedProjection extends Projection {
   private Projection projection;
   private String alias;
@@ -82,6 +84,11 @@ public class AliasedProjection extends Projection {
     return ret + " AS " + alias;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     if (projection != null) return projection.buildParameters();
@@ -16,6 +16,8 @@ package promise.db.projection;
 import promise.commons.model.List;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class CastIntProjection extends Projection {
   private Projection projection;
 
@@ -29,6 +31,11 @@ public class CastIntProjection extends Projection {
     return "CAST(" + ret + " AS INTEGER)";
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (projection != null) projection.buildTables(tables);
+  }
+
   @Override
   public List<String> buildParameters() {
     if (projection != null) return projection.buildParameters();
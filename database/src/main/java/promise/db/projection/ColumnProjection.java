@@ -18,6 +18,8 @@ import promise.db.Column;
 import promise.db.TableCrud;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class ColumnProjection extends Projection {
   private TableCrud table;
   private Column column;
@@ -31,13 +33,18 @@ public class ColumnProjection extends Projection {
   public String build() {
     String ret = "";
 
-    if (!Utils.isNullOrWhiteSpace(table != null ? table.getName() : "")) ret = table.getName();
+    if (!Utils.isNullOrWhiteSpace(table != null ? table.getName() : "")) ret = table.getName() + ".";
 
     if (!Utils.isNullOrWhiteSpace(column.getName())) ret = ret + column.getName();
 
     return ret;
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (table != null) tables.add(table.getName());
+  }
+
   @Override
   public List<String> buildParameters() {
     return Utils.EMPTY_LIST.map(
@@ -18,6 +18,8 @@ import promise.db.Column;
 import promise.db.QueryBuilder;
 import promise.db.TableCrud;
 
+import java.util.Set;
+
 public abstract class Projection {
   // Simple column
   public static ColumnProjection column(Column column) {
@@ -110,4 +112,12 @@ public abstract class Projection {
   public abstract String build();
 
   public abstract List<String> buildParameters();
+
+  /**
+   * adds the names of the tables this projection reads from
+   *
+   * @param tables the names read so far
+   */
+  public void buildTables(Set<String> tables) {
+  }
 }
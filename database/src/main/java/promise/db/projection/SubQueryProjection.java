@@ -17,6 +17,8 @@ import promise.commons.model.List;
 import promise.db.QueryBuilder;
 import promise.db.Utils;
 
+import java.util.Set;
+
 public class SubQueryProjection extends Projection {
   private QueryBuilder subQuery;
 
@@ -30,6 +32,11 @@ public class SubQueryProjection extends Projection {
     else return "";
   }
 
+  @Override
+  public void buildTables(Set<String> tables) {
+    if (subQuery != null) tables.addAll(subQuery.buildTables());
+  }
+
   @Override
   public List<String> buildParameters() {
     if (subQuery != null) return List.fromArray(subQuery.buildParameters());